@@ -0,0 +1,218 @@
+/*
+ * Bonus Assignment #1
+ * CSCI 3102 Fall 2014
+ * author Shane McCulley
+ * date October 11, 2014
+ * version 0.1
+ **/
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Saves the state of a CHC island to a file now and then, so a run that is killed can be
+ * started again and carry on from its last checkpoint instead of from scratch.  The state is
+ * everything Island.writeState writes: the population matrix with each row's fitness and
+ * order, delta, the restart and evolution counters, bestGenome and the generator's state.
+ * A resumed run makes exactly the choices the killed run would have made.
+ *
+ * The file is a small header followed by the state, all big endian:
+ *
+ *     int MAGIC, int VERSION, long digest of the input, int number of values, island state
+ *
+ * The island is only stopped to copy its state into a buffer, which is a few array copies.
+ * The buffer is written by a background thread through a FileChannel, to a temporary file
+ * that is then moved over the checkpoint, so a run killed while writing still leaves the
+ * previous checkpoint whole.  There are two buffers, so the island can take the next copy
+ * while the last one is still being written.
+ *
+ * A checkpoint belongs to one input, checked by its digest, and must be resumed with the
+ * same options.  It is not used with -islands, whose islands race and can not be replayed.
+ *
+ * @author Shane McCulley
+ */
+public class Checkpoint implements Closeable
+{
+	final static int MAGIC = 0x43484343;    //"CHCC"
+	final static int VERSION = 1;
+	final static int HEADER_BYTES = 2 * Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+	//Instance variables
+	private final Path file;
+	private final Path temporary;          //Written first, then moved over file
+	private final long digest;             //Of the input the checkpoint belongs to
+	private final int valueCount;
+
+	private final ByteBuffer[] buffers = new ByteBuffer[ 2 ];
+	private final Future<?>[] writes = new Future<?>[ 2 ];    //Last write of each buffer
+	private int next = 0;                  //Buffer the next save copies into
+	private final ExecutorService writer = Executors.newSingleThreadExecutor( task -> {
+		Thread thread = new Thread( task, "checkpoint writer" );
+		thread.setDaemon( true );
+		return thread;
+	} );
+
+	/**
+	 * Sets up checkpoints of a run on one input.  Nothing is read or written yet.
+	 * @param fileName The checkpoint file.
+	 * @param fitnessCalc Holds the input of the run.
+	 */
+	public Checkpoint( String fileName, FitnessCalc fitnessCalc )
+	{
+		file = Paths.get( fileName );
+		temporary = Paths.get( fileName + ".tmp" );
+		digest = digest( fitnessCalc );
+		valueCount = fitnessCalc.getSize();
+	}
+
+	/** @return A 64 bit hash of the input values in order, so a checkpoint is only resumed on its own input */
+	static long digest( FitnessCalc fitnessCalc )
+	{
+		long hash = fitnessCalc.getSize();
+		for( int i = 0; i < fitnessCalc.getSize(); i++ )
+			hash = ( hash ^ Genome.zobristKey( i ) ) * 31 + fitnessCalc.getWeight( i );
+
+		return hash;
+	}
+
+	/**
+	 * Copies the state of island and has it written in the background.  Returns as soon as
+	 * the copy is taken, unless the write before last is still going, which it waits for.
+	 * @param island The island to save.
+	 * @throws IOException If an earlier write failed.
+	 */
+	public void save( Island island ) throws IOException
+	{
+		int b = next;
+		next = 1 - next;
+		finish( b );
+
+		int bytes = HEADER_BYTES + island.stateBytes();
+		if( buffers[ b ] == null || buffers[ b ].capacity() < bytes )
+			buffers[ b ] = ByteBuffer.allocate( bytes );
+
+		ByteBuffer buffer = buffers[ b ];
+		buffer.clear();
+		buffer.putInt( MAGIC ).putInt( VERSION ).putLong( digest ).putInt( valueCount );
+		island.writeState( buffer );
+		buffer.flip();
+
+		writes[ b ] = writer.submit( () -> {
+			write( buffer );
+			return null;
+		} );
+	}
+
+	/** Waits for the last write of buffer b, if any, and passes on its error */
+	private void finish( int b ) throws IOException
+	{
+		if( writes[ b ] == null )
+			return;
+
+		try
+		{
+			writes[ b ].get();
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch( ExecutionException e )
+		{
+			throw new IOException( "checkpoint write failed", e.getCause() );
+		}
+		finally
+		{
+			writes[ b ] = null;
+		}
+	}
+
+	/** Writes buffer to the temporary file, forces it to disk and moves it over the checkpoint */
+	private void write( ByteBuffer buffer ) throws IOException
+	{
+		try( FileChannel channel = FileChannel.open( temporary, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING ) )
+		{
+			while( buffer.hasRemaining() )
+				channel.write( buffer );
+			channel.force( false );
+		}
+
+		Files.move( temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+	}
+
+	/**
+	 * Loads the checkpoint into island if there is one for this input.
+	 * @param island A new island of this input, which takes the saved state.
+	 * @return True if the island was restored, false if there is no checkpoint for this input.
+	 * @throws IOException If the checkpoint can not be read, is cut short or is damaged.  The
+	 * island is left as it was then.
+	 */
+	public boolean restore( Island island ) throws IOException
+	{
+		ByteBuffer buffer;
+		try( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) )
+		{
+			if( channel.size() > Integer.MAX_VALUE )
+				throw new IOException( file + " is not a checkpoint" );
+			buffer = ByteBuffer.allocate( (int)channel.size() );
+			while( buffer.hasRemaining() && channel.read( buffer ) >= 0 )
+				;
+			buffer.flip();
+		}
+		catch( NoSuchFileException e )
+		{
+			return false;
+		}
+
+		if( buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC )
+			throw new IOException( file + " is not a checkpoint" );
+		if( buffer.getInt() != VERSION )
+			throw new IOException( file + " was written by another version" );
+		if( buffer.getLong() != digest || buffer.getInt() != valueCount )
+			return false;
+
+		island.readState( buffer );
+		return true;
+	}
+
+	/**
+	 * Waits for the writes still going, then removes the checkpoint.  Called once the run is
+	 * finished, so the next run on the same file starts from scratch.
+	 * @throws IOException If a write failed or the file can not be removed.
+	 */
+	public void delete() throws IOException
+	{
+		finish( 0 );
+		finish( 1 );
+		Files.deleteIfExists( file );
+		Files.deleteIfExists( temporary );
+	}
+
+	/** Waits for the writes still going and stops the writer thread */
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			finish( 0 );
+			finish( 1 );
+		}
+		finally
+		{
+			writer.shutdown();
+		}
+	}
+}
@@ -0,0 +1,279 @@
+/*
+ * Bonus Assignment #1
+ * CSCI 3102 Fall 2014
+ * author Shane McCulley
+ * date October 11, 2014
+ * version 0.1
+ **/
+
+import java.util.Arrays;
+
+/**
+ * Finds a best partition outright when the input is small enough, so CHC only runs on the
+ * sets that need it.  solve picks the engine from the size and value range of the input:
+ *
+ * Subset sum dynamic programming when the range of possible subset sums is small.  One bit
+ * per possible sum says whether some subset reaches it, and adding a value shifts the whole
+ * bitset by that value and ors it in, 64 sums per word operation.  Negative values shift the
+ * other way; sums are stored offset by the sum of the negative values so the smallest is bit 0.
+ * For every sum we also keep the first value that reached it, which is enough to walk back
+ * from the best sum to a subset with it.  The cost is n times the range / 64 word operations.
+ *
+ * Meet in the middle when there are at most MITM_MAX values.  Every subset sum of each half
+ * is listed and sorted, and one pass with a pointer from each end finds the pair whose total
+ * is closest to half the sum.  MITM_MAX is 40 so the two lists fit in 16 MB.  The cost is about 2^(n / 2) * n.
+ *
+ * Otherwise solve returns null and the caller runs CHC.
+ *
+ * @author Shane McCulley
+ */
+public class ExactSolver
+{
+	/* Largest number of possible subset sums the DP will track, one bit and one int each */
+	final static int DP_MAX_RANGE = 1 << 23;
+
+	/* Largest number of word operations, values times words of the bitset, the DP may take */
+	final static long DP_MAX_WORK = 1L << 28;
+
+	/* Largest input for meet in the middle.  Each half then has at most 2^20 subset sums */
+	final static int MITM_MAX = 40;
+
+	/** The engines solve picks from.  CHC means no exact engine fits and solve returns null.  
+	 * CACHE is never picked here; FindPartition reports it for a set ResultCache already had */
+	public enum Engine { SUBSET_SUM_DP, MEET_IN_THE_MIDDLE, CHC, CACHE }
+
+	/**
+	 * Picks the engine for the input, see the class comment.
+	 * @param fitnessCalc Holds the input values.
+	 * @return The engine solve would use.
+	 */
+	public static Engine choose( FitnessCalc fitnessCalc )
+	{
+		int n = fitnessCalc.getSize();
+		if( n == 0 )
+			return Engine.CHC;
+
+		long range = sumRange( fitnessCalc );
+		long words = ( range + 63 ) >>> 6;
+		if( range <= DP_MAX_RANGE && n * words <= DP_MAX_WORK )
+			return Engine.SUBSET_SUM_DP;
+
+		if( n <= MITM_MAX )
+			return Engine.MEET_IN_THE_MIDDLE;
+
+		return Engine.CHC;
+	}
+
+	/**
+	 * Solves the input exactly if one of the exact engines fits it.
+	 * @param fitnessCalc Holds the input values.
+	 * @return A genome with the best fitness possible, or null if CHC has to be used.
+	 */
+	public static Genome solve( FitnessCalc fitnessCalc )
+	{
+		switch( choose( fitnessCalc ) )
+		{
+			case SUBSET_SUM_DP: return subsetSum( fitnessCalc );
+			case MEET_IN_THE_MIDDLE: return meetInTheMiddle( fitnessCalc );
+			default: return null;
+		}
+	}
+
+	/** @return Number of possible subset sums, from the sum of the negative values to the sum of the positive ones */
+	private static long sumRange( FitnessCalc fitnessCalc )
+	{
+		long negative = 0;
+		long positive = 0;
+		for( int i = 0; i < fitnessCalc.getSize(); i++ )
+		{
+			int value = fitnessCalc.getWeight( i );
+			if( value < 0 )
+				negative += value;
+			else
+				positive += value;
+		}
+		return positive - negative + 1;
+	}
+
+	/**
+	 * Bitset subset sum DP.  Gene i is 1 when value i is in the chosen subset.
+	 * @param fitnessCalc Holds the input values.
+	 * @return The genome of a subset whose sum is closest to half the total.
+	 */
+	static Genome subsetSum( FitnessCalc fitnessCalc )
+	{
+		int n = fitnessCalc.getSize();
+
+		long negative = 0;
+		for( int i = 0; i < n; i++ )
+			negative += Math.min( fitnessCalc.getWeight( i ), 0 );
+
+		int range = (int)sumRange( fitnessCalc );
+		int start = (int)-negative;              //Bit of the empty subset, sum 0
+
+		long[] reachable = new long[ ( range + 63 ) >>> 6 ];
+		int[] firstValue = new int[ range ];     //Value that first reached each sum
+		reachable[ start >>> 6 ] |= 1L << start;
+
+		for( int i = 0; i < n; i++ )
+		{
+			int value = fitnessCalc.getWeight( i );
+			if( value > 0 )
+				shiftUp( reachable, value, firstValue, i );
+			else if( value < 0 )
+				shiftDown( reachable, -value, firstValue, i );
+		}
+
+		/* Sums are stored as sum - negative.  Find the reachable one closest to total / 2 */
+		long total = fitnessCalc.getTotal();
+		int best = -1;
+		long bestFitness = Long.MAX_VALUE;
+		for( int w = 0; w < reachable.length; w++ )
+		{
+			for( long bits = reachable[ w ]; bits != 0; bits &= bits - 1 )
+			{
+				int s = ( w << 6 ) + Long.numberOfTrailingZeros( bits );
+				long fitness = Math.abs( total - 2 * ( s + negative ) );
+				if( fitness < bestFitness )
+				{
+					bestFitness = fitness;
+					best = s;
+				}
+			}
+		}
+
+		/* Walk back: the value that first reached a sum was added to a sum reachable before it */
+		long[] genes = new long[ Genome.wordsFor( n ) ];
+		for( int s = best; s != start; )
+		{
+			int i = firstValue[ s ];
+			genes[ i >>> 6 ] |= 1L << i;
+			s -= fitnessCalc.getWeight( i );
+		}
+
+		return new Genome( fitnessCalc, genes, 0 );
+	}
+
+	/** reachable |= reachable << shift, recording value as the first to reach every new sum */
+	private static void shiftUp( long[] reachable, int shift, int[] firstValue, int value )
+	{
+		int wordShift = shift >>> 6;
+		int bitShift = shift & 63;
+
+		/* From the top down, so every word we read has not been changed yet */
+		for( int w = reachable.length - 1; w >= wordShift; w-- )
+		{
+			long shifted = reachable[ w - wordShift ] << bitShift;
+			if( bitShift != 0 && w - wordShift - 1 >= 0 )
+				shifted |= reachable[ w - wordShift - 1 ] >>> ( 64 - bitShift );
+
+			record( reachable, w, shifted, firstValue, value );
+		}
+	}
+
+	/** reachable |= reachable >>> shift, recording value as the first to reach every new sum */
+	private static void shiftDown( long[] reachable, int shift, int[] firstValue, int value )
+	{
+		int wordShift = shift >>> 6;
+		int bitShift = shift & 63;
+
+		/* From the bottom up, so every word we read has not been changed yet */
+		for( int w = 0; w + wordShift < reachable.length; w++ )
+		{
+			long shifted = reachable[ w + wordShift ] >>> bitShift;
+			if( bitShift != 0 && w + wordShift + 1 < reachable.length )
+				shifted |= reachable[ w + wordShift + 1 ] << ( 64 - bitShift );
+
+			record( reachable, w, shifted, firstValue, value );
+		}
+	}
+
+	/** Ors shifted into word w and records value for the sums it newly reaches */
+	private static void record( long[] reachable, int w, long shifted, int[] firstValue, int value )
+	{
+		long added = shifted & ~reachable[ w ];
+		reachable[ w ] |= shifted;
+
+		for( ; added != 0; added &= added - 1 )
+			firstValue[ ( w << 6 ) + Long.numberOfTrailingZeros( added ) ] = value;
+	}
+
+	/**
+	 * Meet in the middle over the two halves of the input.
+	 * @param fitnessCalc Holds at most MITM_MAX values.
+	 * @return The genome of a subset whose sum is closest to half the total.
+	 */
+	static Genome meetInTheMiddle( FitnessCalc fitnessCalc )
+	{
+		int n = fitnessCalc.getSize();
+		int lowCount = n / 2;
+		int highCount = n - lowCount;
+
+		long[] low = subsetSums( fitnessCalc, 0, lowCount );
+		long[] high = subsetSums( fitnessCalc, lowCount, highCount );
+
+		/* We want low + high as close as possible to total / 2, that is 2 * ( low + high ) to total */
+		long total = fitnessCalc.getTotal();
+		long bestFitness = Long.MAX_VALUE;
+		long bestLow = 0;
+		long bestHigh = 0;
+
+		/* As low goes up the partner it needs comes down, so h only moves down.  For each low
+		 * sum, h stops at the largest high sum that does not overshoot; h + 1 is the smallest that does */
+		int h = high.length - 1;
+		for( int l = 0; l < low.length && bestFitness > 0; l++ )
+		{
+			long lowSum = low[ l ] >> 20;
+			while( h > 0 && 2 * ( lowSum + ( high[ h ] >> 20 ) ) > total )
+				h--;
+
+			for( int k = h; k <= h + 1 && k < high.length; k++ )
+			{
+				long fitness = Math.abs( total - 2 * ( lowSum + ( high[ k ] >> 20 ) ) );
+				if( fitness < bestFitness )
+				{
+					bestFitness = fitness;
+					bestLow = low[ l ];
+					bestHigh = high[ k ];
+				}
+			}
+		}
+
+		/* The low 20 bits of each key are the subset of its half */
+		long[] genes = new long[ Genome.wordsFor( n ) ];
+		genes[ 0 ] = ( bestLow & 0xFFFFF ) | ( ( bestHigh & 0xFFFFF ) << lowCount );
+
+		return new Genome( fitnessCalc, genes, 0 );
+	}
+
+	/**
+	 * Lists the sums of every subset of count values from first, sorted.  Each entry is the
+	 * sum shifted up 20 bits with the subset in the low 20 bits, so sorting the keys sorts
+	 * the sums and the subset comes along.  The subsets are visited in Gray code order, so
+	 * each sum is the previous one plus or minus a single value.
+	 * @return The 2^count keys, sorted.
+	 */
+	private static long[] subsetSums( FitnessCalc fitnessCalc, int first, int count )
+	{
+		long[] keys = new long[ 1 << count ];
+		long sum = 0;
+		int subset = 0;
+		keys[ 0 ] = 0;
+
+		for( int k = 1; k < keys.length; k++ )
+		{
+			/* The Gray code of k differs from that of k - 1 in its lowest set bit */
+			int bit = Integer.numberOfTrailingZeros( k );
+			subset ^= 1 << bit;
+			if( ( subset & ( 1 << bit ) ) != 0 )
+				sum += fitnessCalc.getWeight( first + bit );
+			else
+				sum -= fitnessCalc.getWeight( first + bit );
+
+			keys[ k ] = ( sum << 20 ) | subset;
+		}
+
+		Arrays.sort( keys );
+		return keys;
+	}
+}
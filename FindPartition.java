@@ -7,18 +7,25 @@
  **/
 
 import java.util.Collections;
-import java.util.Scanner;
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
 import java.util.ArrayList;
-import java.lang.IllegalStateException;
-import java.util.NoSuchElementException;
-import java.util.Random;
+import java.util.Arrays;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
  * Reads integer set(s) from a file "input.txt" in the form of {1, 2, 3} and generates 
- * K=2 subsets in which the difference of sums of the subsets are minimized.  Note that a 
- * single integer in the form of {3} will cause the program to crash.  
+ * K=2 subsets in which the difference of sums of the subsets are minimized.  Values may be 
+ * separated by commas, spaces or newlines, and a single integer like {3} is a valid set.  
  *   
  * This class drives the algorithm behind our genetic algorithm.  It implements an algorithm
  * called CHC (Eshelman 1991).  The main idea of this algorithm is a combination of an elitism
@@ -57,188 +64,515 @@ public class FindPartition
 	final static double MUTATION_RATE = 0.35; // This is the value used during a mutation step.
 	final static int MIN_FITNESS = 6;		//Minimum fitness we want to seek for in solution.  
 	
+	/* With -heuristics, this many light mutations of the heuristic partitions are added, at this rate */
+	final static int SEED_COPIES = POP_SIZE / 4;
+	final static double SEED_PERTURBATION = 0.01;
+	
+	/* With -memetic, local search runs on this many survivors per generation, making at most this many moves each */
+	final static int LOCAL_SEARCH_TOP = 4;
+	final static int LOCAL_SEARCH_STEPS = 100;
+	
 	/* This is the max number of evolutions allowed that generate no better fitness genomes before terminating */
 	final static int MAX_EVOLUTIONS = 25;     
 	
-	static int BEST_FITNESS;	   //smallest fitness value possible.  0 if sum is even, 1 if odd.
-	static long BEGIN; 				//Used to time the algorithm
-	static long END;
+	/* When true, the pairs of each generation are mated on all cores by MatingTask.  Set with -parallel */
+	static boolean PARALLEL = false;
+	
+	/* When above 0, runGA evolves this many islands on their own threads with IslandModel.  Set with -islands N */
+	static int ISLANDS = 0;
+	
+	/* When true, main reads every set first and solves them all at once on a thread pool.  Set with -batch */
+	static boolean BATCH = false;
+	
+	/* Number of groups to split each set into.  Above 2, KPartition solves the set.  Set with -k N */
+	static int GROUPS = 2;
+	
+	/* When true, populations reject duplicate genomes through their hash index.  Set with -unique */
+	static boolean UNIQUE = false;
+	
+	/* When true, populations start with the Karmarkar-Karp and greedy partitions of the input, 
+	 * and get them back after every cataclysm.  Set with -heuristics */
+	static boolean HEURISTICS = false;
+	
+	/* When true, the best survivors of each generation are improved by LocalSearch.  Set with -memetic */
+	static boolean MEMETIC = false;
+	
+	/* When true, sets small enough for ExactSolver are solved outright and CHC only runs on 
+	 * the rest.  Turned off with -no-exact */
+	static boolean EXACT = true;
+	
+	/* File every run writes its per generation metrics to, CSV or JSON, or null for none.  Set with -metrics */
+	static String METRICS = null;
+	static GAListener LISTENER = null;   //Writes to METRICS while main runs
+	private static int runCount = 0;     //Runs made so far, numbers the runs in the metrics
+	
+	/* Checkpoint file of each run is CHECKPOINT.run, or none if null.  A run finding its file 
+	 * resumes from it.  Saved every CHECKPOINT_INTERVAL generations.  Set with -checkpoint F 
+	 * and -checkpoint-every N */
+	static String CHECKPOINT = null;
+	static int CHECKPOINT_INTERVAL = 100;
+	
+	/* Wall clock budget of every run in ms, 0 for none.  A run out of time returns the best 
+	 * genome found so far.  Set with -budget MS */
+	static long TIME_BUDGET = 0;
+	
+	/* Best partitions of the sets solved before, kept in RESULT_CACHE and the file CACHE.  A set 
+	 * cached at its best fitness is not solved again, any other cached set seeds the population.  
+	 * Set with -cache F */
+	static String CACHE = null;
+	static ResultCache RESULT_CACHE = null;
+	
+	/* When true, the weights and population matrices of every run are kept off the heap in 
+	 * OffHeap blocks, freed when the run is done, so inputs of millions of values run with 
+	 * a small heap.  Set with -offheap */
+	static boolean OFF_HEAP = false;
+	
+	/* Seed of every run when FIXED_SEED is true, so a run can be replayed.  Set with -seed N */
+	static long SEED = 0;
+	static boolean FIXED_SEED = false;
+	
+	/* Everything below belongs to one run, so several FindPartitions can solve different sets at once */
+	final int[] inputData;			//null with OFF_HEAP, as fitnessCalc holds the only copy then
+	final FitnessCalc fitnessCalc;	//Fitness of inputData, shared by every genome of this run
+	final int bestFitness;	   		//smallest fitness value possible.  0 if sum is even, 1 if odd.
+	long begin; 					//Used to time the algorithm
+	long end;
+	Genome bestGenome; 	   			//This will be a genome of fitness less than MIN_FITNESS
+	boolean announceCataclysms = true;
+	final GARandom rand;			//Every random choice of this run is drawn from here
+	ExactSolver.Engine engine = ExactSolver.Engine.CHC;	//How solve found bestGenome
+	GAListener listener = LISTENER;	//Told the numbers of every CHC generation, or null
+	final int run;					//Number of this run, for the listener and the checkpoint file
+	
+	/* Anytime solving: solve stops between generations once the budget is spent or stop is 
+	 * set, and every better genome is published to bestSoFar and improved as it is found */
+	long timeBudget = TIME_BUDGET;	//ms, 0 for none
+	private long deadline;			//System.nanoTime() when the budget is spent
+	final AtomicBoolean stop = new AtomicBoolean( false );
+	Consumer<Genome> improved = null;
+	ResultCache cache = RESULT_CACHE;	//Where solve looks first and stores its answer, or null
+	private volatile Genome bestSoFar = null;
 	
 	/* The Hamming distance is the sum of every bit that differs between 
 	 * 2 genomes.  Two genomes can only reproduce if their Hamming distance is 
-	 * above the threshold which starts at INIT_HAMMING after a cataclysmic event.  
+	 * above the threshold which starts at initHamming after a cataclysmic event.  
 	 * This helps to prevent premature convergence and increase diversity.  
 	 * This value decreases every pass if no children are made until a restart 
 	 * occurs, which uses the mutation operator on the best fit genome.  
 	 * 
 	 */
-	static int INIT_HAMMING; //INIT_HAMMING = geneSize/4.  We initialize delta at this value
+	final int initHamming; //initHamming = geneSize/4.  We initialize delta at this value
 	
-	public static void runGA( ArrayList<Integer> inputData )
+	/**
+	 * Sets up a run of CHC on one input set.  Nothing is evolved until solve is called.  
+	 * @param inputData The set to partition.  
+	 */
+	public FindPartition( int[] inputData )
 	{
+		this( inputData, nextRun() );
+	}
+	
+	/**
+	 * Sets up a run with a number taken earlier from nextRun, so runs made on other threads 
+	 * are still numbered in the order their sets were read.  
+	 * @param inputData The set to partition.  
+	 * @param run Number of the run, which picks its checkpoint file.  
+	 */
+	FindPartition( int[] inputData, int run )
+	{
+		this.run = run;
 		
-		/* Genes map to buckets equal to length of inputData */
-		int geneSize = inputData.size();
-
 		/* Minimum difference allowed at first to produce children.  Delta initialized to this value*/
-		INIT_HAMMING = geneSize/4; 
-		
-		/*Initialize the rest of variables and begin algorithm */
-		int delta = INIT_HAMMING; 
-		int numRestarts = 0;   		//This increments every cataclysm until numRestarts=MAX_RESTART
-		Genome bestGenome; 	   		//This will be a genome of fitness less than MIN_FITNESS
-		BEST_FITNESS = sumList( inputData ) % 2;  	// 0 if inputData sum is even, 1 if odd 
-		BEGIN = System.currentTimeMillis(); 	 	//Begin timer
-		int evolutions = 0;
+		initHamming = inputData.length/4; 
+		bestFitness = (int)Math.abs( sumList( inputData ) % 2 );  	// 0 if inputData sum is even, 1 if odd, also when negative
 		
-		/* Initialize our fitness calculator */
-		Genome.setFitnessCalc( inputData );
+		/* Initialize our fitness calculator.  Off the heap it has copied the values, so we let go of ours */
+		fitnessCalc = new FitnessCalc( inputData, OFF_HEAP );
+		this.inputData = fitnessCalc.isOffHeap() ? null : inputData;
+		rand = FIXED_SEED ? new GARandom( SEED ) : new GARandom();
+	}
+	
+	/** @return The number of the next run, counting from 1 */
+	static synchronized int nextRun()
+	{
+		return ++runCount;
+	}
+	
+	/** Copies the set into an int array, see {@link #FindPartition(int[])} {@param inputData The set to partition} */
+	public FindPartition( ArrayList<Integer> inputData )
+	{
+		this( toArray( inputData ) );
+	}
+	
+	/** Solves one set and prints the result, the way main always has */
+	public static void runGA( ArrayList<Integer> inputData )
+	{
+		runGA( toArray( inputData ) );
+	}
+	
+	/** Solves one set and prints the result, the way main always has */
+	public static void runGA( int[] inputData )
+	{
+		if( GROUPS > 2 )
+		{
+			KPartition.runGA( inputData, GROUPS );
+			return;
+		}
 		
-		/* Construct population of POP_SIZE with gene length of inputData.size() */
-		Population myPop = new Population( POP_SIZE, inputData.size() );
-		bestGenome = myPop.getFittest();  //Make sure bestGenome gets intialized 
+		FindPartition run = new FindPartition( inputData );
+		run.solve();
+		run.printReport( System.out );
+		run.close();
+	}
 		
+	/**
+	 * Solves the set with ExactSolver if it fits one of its engines, otherwise runs CHC 
+	 * until we find a solution or we have MAX_RESTART cataclysms.  
+	 * @return The best genome found.  
+	 */
+	public Genome solve()
+	{
+		begin = System.currentTimeMillis(); 	 	//Begin timer
+		deadline = System.nanoTime() + timeBudget * 1000000L;
+
+		if( EXACT )
+			engine = ExactSolver.choose( fitnessCalc );
+		Genome cached = ( cache != null ) ? cache.lookup( fitnessCalc ) : null;
 		
-		/* Run algorithm until we find a solution or we have MAX_RESTART cataclysms
-		 * Upper limit of executions put in place as some data sets did not converge to 0 children in testing.*/
-		while( (numRestarts < MAX_RESTART) && (evolutions < MAX_EVOLUTIONS) )
+		if( cached != null && cached.getFitness() <= bestFitness )
 		{
-			
-			/* Create a child population, initially empty */ 
-			Population childPop = new Population();
-			
-			/*
-			 * Randomly pair our population and determine Hamming distance.  We use randomIterator 
-			 * and take 2 at a time to simulate random pairing without replacement.  
-			 */
-			ArrayList<Integer> randomIterator = randomIteration( myPop.getSize() );
-			for(int i = 0; i < randomIterator.size(); i = i + 2)
+			/* Solved before, in this order or another */
+			engine = ExactSolver.Engine.CACHE;
+			bestGenome = cached;
+			publish( bestGenome );
+		}
+		else if( engine != ExactSolver.Engine.CHC )
+		{
+			bestGenome = ExactSolver.solve( fitnessCalc );
+			publish( bestGenome );
+		}
+		else if( ISLANDS > 0 )
+		{
+			/* Every island runs the loop below on its own thread, trading genomes now and then */
+			bestGenome = IslandModel.evolveIslands( fitnessCalc, ISLANDS, initHamming, bestFitness, rand, listener, run,
+													  this::isStopped, this::publish, cached );
+		}
+		else
+		{
+			/* Construct population of POP_SIZE with gene length of inputData.length */
+			Island island = new Island( fitnessCalc, initHamming, bestFitness, rand );
+			island.announceCataclysms = announceCataclysms;
+			island.setListener( listener, run, 0 );
+			if( cached != null )
+				island.addSeed( cached );
+			Checkpoint checkpoint = ( CHECKPOINT != null ) ? resume( island ) : null;
+		
+			/* Run algorithm until we find a solution or we have MAX_RESTART cataclysms
+			 * Upper limit of executions put in place as some data sets did not converge to 0 children in testing.*/
+			try
 			{
-				/* Get the 2 parents by using randomIterator as indices to myPop */
-				Genome parent1 = myPop.getGenome( randomIterator.get( i ) );
-				Genome parent2 = myPop.getGenome( randomIterator.get( i + 1) );
-				
-				/* if the Hamming distance / 2 is greater than delta, they create children 
-				 * If no children are produced in the entire pass of for loop, we decrease
-				 * delta by 1. (Hamming distance / 2) is the number of genes that would change.
-				 */
-				int hammingDistance = parent1.hammingDistance( parent2 );
-				if( (hammingDistance/2 ) > delta ) 
+				while( !island.isFinished() && !isStopped() )
 				{
-					
-					/*xorSeed has bits set at half of the differences between the two parents */
-					Genome xorSeed = createSeed( parent1, parent2 );
-					
-					/*Create 2 children from the parents by swapping half the different genes using xorSeed
-					 * The first parent in the argument is used with xor to produce the child */
-					Genome child1 = createChild( parent1, xorSeed );
-					Genome child2 = createChild( parent2, xorSeed );
-					
-					childPop.addGenome( child1 );
-					childPop.addGenome( child2 );
+					island.evolve();
+					publish( island.getBestGenome() );
+					if( checkpoint != null && island.generation % CHECKPOINT_INTERVAL == 0 )
+						checkpoint = save( checkpoint, island );
 				}
-					
-			
 			}
-			
-			/* If childPop is empty after our for loop, decrease delta and continue.  
-			 * Note that numRestarts only increments after cataclysm, not each while loop
-			 */
-			if( childPop.isEmpty() )
+			finally
 			{
-				delta = delta - 1;
+				island.close();
 			}
+			bestGenome = island.getBestGenome();
 			
-			/* If childPop is not empty, we take the best POP_SIZE genomes from the union of child+parent */
-			else
-			{
-				/* Merge parentPop and childPop */
-				myPop.mergePop( childPop );
-				
-				/*Sort union, and return best N members of that union */
-				myPop = myPop.bestNGenomes( myPop, POP_SIZE );
-				
-			}
-			
-			/* if delta is 0, we have had no children for many loops.  Initialize cataclysm */
-			if( delta <= 0 )
+			if( checkpoint != null )
+				discard( checkpoint );
+		}
+		
+		if( cache != null && engine != ExactSolver.Engine.CACHE )
+			remember( bestGenome );
+		
+		end = System.currentTimeMillis();
+		return bestGenome;
+	}
+		
+	/**
+	 * Solves on executor, stopping after budget ms.  The future completes with the best 
+	 * genome found when the run ends or the budget is spent.  Cancelling the future stops 
+	 * the run at the end of its current generation; getBestSoFar still has its best genome.  
+	 * @param budget Wall clock budget in ms, 0 for none.  
+	 * @param improved Given every better genome as it is found, on the solving thread, or null.  
+	 * @param executor Runs the solve.  
+	 * @return The future best genome.  
+	 */
+	public CompletableFuture<Genome> solveAsync( long budget, Consumer<Genome> improved, Executor executor )
+	{
+		this.timeBudget = budget;
+		this.improved = improved;
+		
+		CompletableFuture<Genome> result = new CompletableFuture<Genome>();
+		result.whenComplete( ( genome, error ) -> stop.set( true ) );  //only matters if cancelled
+		
+		executor.execute( () -> {
+			try
 			{
-				/*Reinitialize delta, increment numRestarts*/ 
-				delta = INIT_HAMMING; 
-				numRestarts++;
-				
-				/* Restart new population through mutation */
-				myPop.cataclysmPop( MUTATION_RATE );
-				
+				result.complete( solve() );
 			}
-			
-			/* We check here for a better genome in this evolution.  If bestGenome remains supreme, increment evolutions*/
-			if( myPop.isFittest( bestGenome ) )
+			catch( Throwable e )
 			{
-				/* if bestGenome the best candidate for MAX_EVOLUTION generations, we quit the loop */
-				evolutions++;
+				result.completeExceptionally( e );
 			}
-			
-			/* This executes if there is a better genome than bestGenome.  We set bestGenome = fittest and reset evolutions*/
-			else
-			{
-
-				bestGenome = myPop.getFittest();
+		} );
+		return result;
+	}
+	
+	/** Same as {@link #solveAsync(long, Consumer, Executor)} on a new thread @param budget ms @param improved or null */
+	public CompletableFuture<Genome> solveAsync( long budget, Consumer<Genome> improved )
+	{
+		return solveAsync( budget, improved, task -> new Thread( task, "partition run " + run ).start() );
+	}
+	
+	/** @return True once stop is set or the time budget is spent.  Checked between generations */
+	boolean isStopped()
+	{
+		return stop.get() || ( timeBudget > 0 && System.nanoTime() - deadline >= 0 );
+	}
+	
+	/** @return The best genome published so far, or null before the first generation */
+	public Genome getBestSoFar()
+	{
+		return bestSoFar;
+	}
+	
+	/**
+	 * Keeps a copy of chromo as bestSoFar and hands it to improved, if it beats bestSoFar.  
+	 * Islands call this from their own threads.  
+	 * @param chromo A best genome.  Not kept, so the caller may go on changing it.  
+	 */
+	synchronized void publish( Genome chromo )
+	{
+		if( bestSoFar != null && chromo.compareTo( bestSoFar ) >= 0 )
+			return;
+		
+		bestSoFar = Genome.copyOf( chromo );
+		if( improved != null )
+			improved.accept( bestSoFar );
+	}
+		
+	/** 
+	 * Frees the weights if they are off the heap.  Call once the run is solved and reported; 
+	 * bestGenome and its group sums stay readable, but no genome of this run may be changed.  
+	 */
+	public void close()
+	{
+		fitnessCalc.close();
+	}
+		
+	/** Stores chromo in cache, which keeps it only if it beats what it has {@param chromo Our answer} */
+	private void remember( Genome chromo )
+	{
+		try
+		{
+			cache.store( chromo );
+		}
+		catch( IOException e )
+		{
+			System.err.println( "Error writing the result cache: " + e.getMessage() );
+		}
+	}
+		
+	/**
+	 * Opens this run's checkpoint and loads it into island if it was saved for this input.  
+	 * @param island The new island of this run.  
+	 * @return The checkpoint to save to, or null if it could not be read.  
+	 */
+	private Checkpoint resume( Island island )
+	{
+		Checkpoint checkpoint = new Checkpoint( CHECKPOINT + "." + run, fitnessCalc );
+		try
+		{
+			if( checkpoint.restore( island ) )
+				System.out.println( "Resuming from generation " + island.generation + " of " + CHECKPOINT + "." + run );
+			return checkpoint;
+		}
+		catch( IOException e )
+		{
+			System.err.println( "Not using checkpoint: " + e.getMessage() );
+			stop( checkpoint );
+			return null;
+		}
+	}
+	
+	/** Saves island to checkpoint.  @return checkpoint, or null if saving failed and checkpoints are off */
+	private static Checkpoint save( Checkpoint checkpoint, Island island )
+	{
+		try
+		{
+			checkpoint.save( island );
+			return checkpoint;
+		}
+		catch( IOException e )
+		{
+			System.err.println( "Checkpoints stopped: " + e.getMessage() );
+			stop( checkpoint );
+			return null;
+		}
+	}
+	
+	/** Removes a finished run's checkpoint and stops its writer {@param checkpoint The checkpoint} */
+	private static void discard( Checkpoint checkpoint )
+	{
+		try
+		{
+			checkpoint.delete();
+		}
+		catch( IOException e )
+		{
+			System.err.println( "Error removing checkpoint: " + e.getMessage() );
+		}
+		stop( checkpoint );
+	}
+	
+	/** Stops the writer of checkpoint, leaving the file as it is {@param checkpoint The checkpoint} */
+	private static void stop( Checkpoint checkpoint )
+	{
+		try
+		{
+			checkpoint.close();
+		}
+		catch( IOException e )
+		{
+			System.err.println( "Error closing checkpoint: " + e.getMessage() );
+		}
+	}
+		
+	/** Prints the time taken and the groups of the best genome {@param out Where to print} */
+	public void printReport( PrintStream out )
+	{
+		out.println( "\nTotal time elapsed: " +  (end-begin) + " ms, seed " + rand.getSeed() + ", engine " + engine ); 
+		printResults( bestGenome, fitnessCalc, out );
+	}
+	
+	/**
+	 * Solves every set at once on a fixed pool with one thread per core, then prints the 
+	 * results in input order.  Each set is its own FindPartition, so the runs share nothing.  
+	 * @param sets The sets to solve.  
+	 */
+	public static void runBatch( ArrayList<int[]> sets )
+	{
+		ExecutorService executor = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors() );
+		ArrayList<Future<String>> reports = new ArrayList<Future<String>>( sets.size() );
+		
+		for( int[] inputData : sets )
+		{
+			/* Numbered here, in input order, so each set finds its own checkpoint whatever the scheduling */
+			int number = ( GROUPS > 2 ) ? 0 : nextRun();
+			reports.add( executor.submit( () -> {
+				ByteArrayOutputStream report = new ByteArrayOutputStream();
 				
-				/*reset evolutions, since we have a new bestGenome */
-				evolutions = 0;
-			}
-			
-			/* force a cataclysm.  Many data sets did not behave as expected, and never
-			 * decreased delta to create a natural cataclysm.  Here, I introduce an alternative
-			 * means of detecting stagnation and forcing cataclysm.  If we have 500 evolutions
-			 * without a better genome, we will conduct a restart 
-			 * and repeat until MAX_RESTARTS is reached */
-			if( bestGenome.getFitness() > MIN_FITNESS && evolutions == MAX_EVOLUTIONS)
+				if( GROUPS > 2 )
+				{
+					KPartition run = new KPartition( inputData, GROUPS );
+					run.announceCataclysms = false;
+					run.solve();
+					run.printReport( new PrintStream( report ) );
+				}
+				else
+				{
+					FindPartition run = new FindPartition( inputData, number );
+					run.announceCataclysms = false;  //runs print at once, so only the reports are shown
+					run.solve();
+					run.printReport( new PrintStream( report ) );
+					run.close();
+				}
+				return report.toString();
+			} ) );
+		}
+		
+		try
+		{
+			/* get waits for each set in turn, so the reports come out in input order.  A set 
+			 * that failed gets an error line in its place and the rest are still printed */
+			for( int i = 0; i < reports.size(); i++ )
 			{
-				myPop.cataclysmPop( MUTATION_RATE );
-				evolutions = 0;
-				numRestarts++;
-				System.out.println("Please hold.  Cataclysm # " + numRestarts + " in progress");
+				try
+				{
+					System.out.print( reports.get( i ).get() );
+				}
+				catch( ExecutionException e )
+				{
+					System.err.println( "Error solving set " + ( i + 1 ) + ": " + e.getCause() );
+				}
 			}
-			
-			/* If a genome exhibits lowest possible fitness, end algorithm */
-			if( bestGenome.getFitness() <= BEST_FITNESS )
-			{
-				/* Set variables to end while loop */ 
-				numRestarts = MAX_RESTART;
-				evolutions = MAX_EVOLUTIONS;
-			} 
-				
-		} //End while loop
-		
-		END = System.currentTimeMillis();
-		System.out.println( "\nTotal time elapsed: " +  (END-BEGIN) + " ms" ); 
-		printResults( bestGenome, inputData );
-		
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
 	}
 	
 	public static Genome createChild( Genome parent, Genome seed )
 	{
-		/* We copy the seed.  We will xor this seed with the appropriate parent to create a child. */
-		Genome newChild = Genome.copyOf( seed );
+		/* We copy the parent along with its group sums.  We will xor the seed into it to create a child. */
+		Genome newChild = Genome.copyOf( parent );
 		
-		/* newChild's genes now contain the indices where we want to swap parentA and parentB's genes*/  
+		/* seed's genes contain the indices where we want to swap parentA and parentB's genes.  
+		 * Since newChild starts with the parent's sums, only the swapped genes are re-summed */  
 		
-		newChild.swapGenes( parent );  //Performs xor operation on each bit from provided genomes. 
+		newChild.swapGenes( seed );  //Performs xor operation on each bit from provided genomes. 
 		
 		return newChild;
 	}
 	
 	public static Genome createSeed( Genome parentA, Genome parentB )
+	{
+		return createSeed( parentA, parentB, new GARandom() );
+	}
+	
+	/**
+	 * Creates the xor seed for HUX: a genome with bits set at half of the genes where 
+	 * parentA and parentB differ, chosen at random.  
+	 * 
+	 * The differing genes are listed once, then a partial Fisher-Yates shuffle picks the 
+	 * bitsToChange of them to drop from the seed with exactly one random draw each.  Every 
+	 * subset of that size is equally likely, and the cost is linear in the number of 
+	 * differences, with no passes over the seed that draw and miss.  
+	 * @param parentA First parent.
+	 * @param parentB Second parent.
+	 * @param randomGenerator Source of the random choices, so each thread can use its own.  
+	 * @return The seed to xor into each parent to create the children.  
+	 */
+	public static Genome createSeed( Genome parentA, Genome parentB, GARandom randomGenerator )
+	{
+		Genome xorSeed = new Genome( parentA.getFitnessCalc(), new long[ Genome.wordsFor( parentA.getSize() ) ], 0 );
+		return createSeed( parentA, parentB, randomGenerator, xorSeed, new int[ parentA.getSize() ] );
+	}
+	
+	/**
+	 * Same as {@link #createSeed(Genome, Genome, GARandom)}, written into scratch space the 
+	 * caller keeps from pair to pair, so mating allocates nothing.  
+	 * @param parentA First parent.
+	 * @param parentB Second parent.
+	 * @param randomGenerator Source of the random choices.  
+	 * @param xorSeed Genome of the parents' size that is overwritten with the seed.  
+	 * @param positions Scratch array with room for every gene.  
+	 * @return xorSeed.  
+	 */
+	public static Genome createSeed( Genome parentA, Genome parentB, GARandom randomGenerator, 
+									 Genome xorSeed, int[] positions )
 	{
 		/* xorSeed genes are set to 1 at every difference between parentA and parentB */
-		Genome xorSeed = parentA.bitDifference( parentB );
+		parentA.bitDifference( parentB, xorSeed );
 
 		/* Cardinality returns number of differences.  We want to swap half, so divide by 2 
 		 * bitsToChange should always be at least 1, since at delta = 1 parents would need a 
 		 * hamming distance of 2 to be able to produce children */
-		int bitsToChange = xorSeed.cardinality() / 2; 
+		int differences = xorSeed.cardinality();
+		int bitsToChange = differences / 2; 
 	
 		if( bitsToChange == 0)
 		{
@@ -246,30 +580,21 @@ public class FindPartition
 		                                                   + parentA + " and " + parentB );
 		}
 		
-		/* We use these variables in a while loop, iterating through until we swap half of the bits */
-		int bitsChanged = 0;
-		int index = -1;				//Begin at -1 so that the first pass will evaluate at index + 1 = 0 
-		double swapChance = 0.5;
-		Random randomGenerator = new Random();
+		/* The index of every differing gene, in order */
+		int count = 0;
+		for( int index = xorSeed.nextSetBit( 0 ); index >= 0; index = xorSeed.nextSetBit( index + 1 ) )
+			positions[ count++ ] = index;
 		
-		/* Continue looping until we make enough changes equal to half the differences of parents */
-		while( bitsChanged < bitsToChange )
+		/* Swap a random one of the remaining positions into slot i, then clear its bit */
+		for( int i = 0; i < bitsToChange; i++ )
 		{
-			/* returns the next set bit after index.  -1 if no other bits are set after index */
-			index = xorSeed.nextSetBit( index + 1 );   //If not index+1, we will stay at the same bit forever.
+			int j = i + randomGenerator.nextInt( differences - i );
+			int index = positions[ j ];
+			positions[ j ] = positions[ i ];
+			positions[ i ] = index;
 			
-			/* if index returns -1, we reset to the beginning and continue looping */
-			if( index == -1 )
-				index = xorSeed.nextSetBit( 0 );
-			
-			/* Flip the gene with swapChance probability. */ 
-			if( randomGenerator.nextDouble() <= swapChance )
-			{
-				xorSeed.flipGene( index );
-				bitsChanged++;
-			}
+			xorSeed.flipGene( index );
 		}
-		  	
 		
 		return xorSeed;
 	}
@@ -282,17 +607,59 @@ public class FindPartition
 	 * @return A randomized list of indices for iterating through population.  
 	 */
 	public static ArrayList<Integer> randomIteration( int popSize )
+	{
+		return randomIteration( popSize, new GARandom() );
+	}
+	
+	/**
+	 * Same as {@link #randomIteration(int, GARandom)}, written into indices instead of a new 
+	 * list, so pairing allocates nothing.  The order is the one the list would have.  
+	 * @param indices Array with room for popSize indices, overwritten.  
+	 * @param popSize Size of our population.  
+	 * @param rand Source of the shuffle.  
+	 */
+	public static void randomIteration( int[] indices, int popSize, GARandom rand )
+	{
+		for( int i = 0; i < popSize; i++ )
+			indices[ i ] = i;
+		
+		rand.shuffle( indices, popSize );
+	}
+	
+	/** Same as {@link #randomIteration(int)}, shuffled with {@param rand} @param popSize Size of our population */
+	public static ArrayList<Integer> randomIteration( int popSize, GARandom rand )
 	{
 		//Initialize ArrayList of size popSize and fill with the index 0...popSize-1
 		ArrayList<Integer> randomIterator = new ArrayList<Integer>( popSize );
 		for( int i = 0; i < popSize; i++ )
 			randomIterator.add( i );
 		
-		//Modifies randomIterator by shuffling the indices, creating our randomIterator. 
-		Collections.shuffle( randomIterator );
+		//Modifies randomIterator by shuffling the indices, creating our randomIterator.  Fisher-Yates
+		for( int i = popSize - 1; i > 0; i-- )
+			Collections.swap( randomIterator, i, rand.nextInt( i + 1 ) );
 			
 		return randomIterator; 
 	}
+	/** @return A new int array with the values of inputData in order */
+	public static int[] toArray( ArrayList<Integer> inputData )
+	{
+		int[] result = new int[ inputData.size() ];
+		for( int i = 0; i < result.length; i++ )
+			result[ i ] = inputData.get( i );
+		
+		return result;
+	}
+	
+	/** @return The sum of inputData, as a long since large sets can overflow an int */
+	public static long sumList( int[] inputData )
+	{
+		long result = 0;
+		for( int value : inputData )
+			result += value;
+		
+		return result;
+	}
+	
 	public static int sumList( ArrayList<Integer> inputData )
 	{
 		int result = 0;
@@ -306,91 +673,224 @@ public class FindPartition
 	
 	public static void printResults( Genome bestGenome, ArrayList<Integer> inputData )
 	{
-		System.out.println( "For input data: " + inputData );
-		System.out.println( "Best solution found has a fitness of " + bestGenome.getFitness() );
-		ArrayList<Integer> firstGroup = new ArrayList<Integer>();
-		ArrayList<Integer> secondGroup = new ArrayList<Integer>();
+		printResults( bestGenome, toArray( inputData ), System.out );
+	}
+	
+	/** 
+	 * Prints the input and both groups of bestGenome.  The groups are written straight to out 
+	 * a chunk at a time, in the same [1, 2, 3] form as a list, so printing millions of values 
+	 * needs no boxed list or whole string of them.  
+	 */
+	public static void printResults( Genome bestGenome, int[] inputData, PrintStream out )
+	{
+		printResults( bestGenome, new FitnessCalc( inputData ), out );
+	}
+	
+	/** Same as {@link #printResults(Genome, int[], PrintStream)}, reading the values from fitnessCalc, on or off the heap */
+	public static void printResults( Genome bestGenome, FitnessCalc fitnessCalc, PrintStream out )
+	{
+		long secondSum = fitnessCalc.groupSum( bestGenome );
 		
-		for( int i = 0; i < bestGenome.getSize(); i++ )
+		out.print( "For input data: " );
+		printGroup( bestGenome, fitnessCalc, -1, out );
+		out.println();
+		out.println( "Best solution found has a fitness of " + bestGenome.getFitness() );
+		out.print( "First group, Sum = " + ( fitnessCalc.getTotal() - secondSum ) + ": " );
+		printGroup( bestGenome, fitnessCalc, 0, out );
+		out.print( "\nSecond group, Sum = " + secondSum + ": " );
+		printGroup( bestGenome, fitnessCalc, 1, out );
+		out.print( "  \n" );
+	}
+		
+	/** Prints the values whose gene in chromo is group, or every value if group is -1, as [1, 2, 3] */
+	private static void printGroup( Genome chromo, FitnessCalc fitnessCalc, int group, PrintStream out )
+	{
+		StringBuilder chunk = new StringBuilder( "[" );
+		boolean first = true;
+		for( int i = 0; i < fitnessCalc.getSize(); i++ )
 		{
-			if( bestGenome.getGene( i ) == 0 )
-				firstGroup.add( inputData.get( i ) );
-			else
-				secondGroup.add( inputData.get( i ) );
+			if( group >= 0 && chromo.getGene( i ) != group )
+				continue;
+			
+			if( !first )
+				chunk.append( ", " );
+			chunk.append( fitnessCalc.getWeight( i ) );
+			first = false;
+			
+			if( chunk.length() >= 8192 )
+			{
+				out.print( chunk );
+				chunk.setLength( 0 );
+			}
 		}
-		System.out.printf( "First group, Sum = %d: %s\n", sumList( firstGroup ), firstGroup );
-		System.out.printf( "Second group, Sum = %d: %s  \n", sumList( secondGroup ), secondGroup );
-		
-		
+		out.print( chunk.append( ']' ) );
 	}
 	public static void main( String[] args)
 	{
-		boolean finished = false;
+		String inputFile = "input.txt";
+		int servePort = -1;
+		ArrayList<int[]> sets = new ArrayList<int[]>();
+		
+		/* -parallel mates the pairs of each generation on every core.  
+		 * -islands N runs N islands at once, -migrate M sets the generations between migrations.  
+		 * -batch solves all sets of the file at once.  -k N splits each set into N groups with plain CHC, 
+		 * ignoring -exact, -heuristics, -memetic, -unique, -parallel, -islands, -metrics, -checkpoint, -cache and -offheap.  
+		 * -unique keeps duplicate genomes out of the population.  -seed N replays the run with seed N.  
+		 * -heuristics seeds the population with the Karmarkar-Karp and greedy partitions.  
+		 * -memetic hill climbs the best survivors of each generation.  
+		 * -no-exact runs CHC even on sets ExactSolver could solve outright.  
+		 * -checkpoint F saves each run to F.run every -checkpoint-every N generations, and resumes from it.  
+		 * -budget MS stops each run after MS ms with the best genome found so far, also with -k.  
+		 * -serve P answers sets posted to http://localhost:P/solve instead of reading a file, see PartitionServer.  
+		 * -cache F remembers the best partition of every set in F and reuses it when the set comes back.  
+		 * -metrics F writes the counters and timings of every generation to F, JSON if it ends in .json, else CSV.  
+		 * -offheap keeps the weights and populations off the heap, for inputs of millions of values.  
+		 * Any other argument names the input file */
+		for( int i = 0; i < args.length; i++ )
+		{
+			if( args[ i ].equals( "-parallel" ) )
+				PARALLEL = true;
+			else if( args[ i ].equals( "-islands" ) && i + 1 < args.length )
+				ISLANDS = Integer.parseInt( args[ ++i ] );
+			else if( args[ i ].equals( "-migrate" ) && i + 1 < args.length )
+				IslandModel.MIGRATION_INTERVAL = Integer.parseInt( args[ ++i ] );
+			else if( args[ i ].equals( "-batch" ) )
+				BATCH = true;
+			else if( args[ i ].equals( "-unique" ) )
+				UNIQUE = true;
+			else if( args[ i ].equals( "-heuristics" ) )
+				HEURISTICS = true;
+			else if( args[ i ].equals( "-memetic" ) )
+				MEMETIC = true;
+			else if( args[ i ].equals( "-no-exact" ) )
+				EXACT = false;
+			else if( args[ i ].equals( "-checkpoint" ) && i + 1 < args.length )
+				CHECKPOINT = args[ ++i ];
+			else if( args[ i ].equals( "-checkpoint-every" ) && i + 1 < args.length )
+				CHECKPOINT_INTERVAL = Integer.parseInt( args[ ++i ] );
+			else if( args[ i ].equals( "-budget" ) && i + 1 < args.length )
+				TIME_BUDGET = Long.parseLong( args[ ++i ] );
+			else if( args[ i ].equals( "-serve" ) && i + 1 < args.length )
+				servePort = Integer.parseInt( args[ ++i ] );
+			else if( args[ i ].equals( "-cache" ) && i + 1 < args.length )
+				CACHE = args[ ++i ];
+			else if( args[ i ].equals( "-offheap" ) )
+				OFF_HEAP = true;
+			else if( args[ i ].equals( "-metrics" ) && i + 1 < args.length )
+				METRICS = args[ ++i ];
+			else if( args[ i ].equals( "-seed" ) && i + 1 < args.length )
+			{
+				SEED = Long.parseLong( args[ ++i ] );
+				FIXED_SEED = true;
+			}
+			else if( args[ i ].equals( "-k" ) && i + 1 < args.length )
+				GROUPS = Integer.parseInt( args[ ++i ] );
+			else
+				inputFile = args[ i ];
+		}
+		
+		if( CACHE != null )
+		{
+			try
+			{
+				RESULT_CACHE = new ResultCache( CACHE );
+			}
+			catch( IOException e )
+			{
+				System.err.println( "Not using the result cache: " + e.getMessage() );
+			}
+		}
+		
+		/* The server keeps running on its own threads, with the options given above */
+		if( servePort >= 0 )
+		{
+			try
+			{
+				PartitionServer server = new PartitionServer( servePort );
+				System.out.println( "Solving sets posted to http://localhost:" + server.getPort() + "/solve" );
+				
+				/* The server runs until the JVM is stopped, so that is when the cache is closed */
+				Runtime.getRuntime().addShutdownHook( new Thread( () -> {
+					server.stop();
+					closeCache();
+				}, "partition server shutdown" ) );
+			}
+			catch( IOException e )
+			{
+				System.err.println( "Could not start the server: " + e.getMessage() );
+				closeCache();
+			}
+			return;
+		}
 		
+		MetricsWriter metrics = null;
 		try
 		{
+			if( METRICS != null )
+			{
+				metrics = new MetricsWriter( METRICS );
+				LISTENER = metrics;
+			}
+			
 			/*
-			 * We read the string from input.txt and convert it into an ArrayList<Integer>.
+			 * We read the sets from the input file straight into int arrays with SetReader.
 			 * The input file is read and processed until it is empty.  
 			 */
-			Scanner in = new Scanner( new File( "input.txt" ) );
-			in.useDelimiter(", |\r\n");
+			SetReader in = new SetReader( inputFile );
 			
-			while( !finished )
+			while( in.nextSet() )
 			{
-				/*Create new ArrayList for next set of data */
-				ArrayList<Integer> inputData = new ArrayList<Integer>();
-				
-				/*reads in the beginning { and number next to it*/
-				
-				String firstBrace = in.next();
-				
-				/* Read from the file until we encounter the last number and trailing left brace } */
-				while( in.hasNextInt() )
-				{
-					
-					int nextInt = in.nextInt(); 
-					inputData.add( nextInt );					
-				}
-				
-				String lastBrace = in.next();
-				
-				/* strip beginning and ending braces from these two strings and parse the integers */
-				firstBrace = firstBrace.substring( 1, firstBrace.length() );
-				lastBrace = lastBrace.substring( 0, lastBrace.length() - 1 );
-				
-				inputData.add( Integer.parseInt( firstBrace ) );
-				inputData.add( Integer.parseInt( lastBrace ) );
+				/* The reader reuses its buffer for the next set, so take a copy */
+				int[] inputData = Arrays.copyOf( in.getValues(), in.getCount() );
 				
 				/* Data input complete.  
-				 * Run CHC on inputData until we find a solution or hit MAX_RESTARTS */
-				runGA( inputData);
-				
-				/*if there is not anything remaining in file, we set finished to true */
-				if( ! in.hasNext() )
-				{
-					finished = true;
-				}
+				 * Run CHC on inputData until we find a solution or hit MAX_RESTARTS.  
+				 * In batch mode the set is kept and solved with the others after the file is read */
+				if( BATCH )
+					sets.add( inputData );
+				else
+					runGA( inputData);
 			}
 			
 			in.close();
+			
+			if( BATCH )
+				runBatch( sets );
 		}
-		catch( FileNotFoundException e )
+		catch( NoSuchFileException e )
 		{ 
 			System.err.println("File not found.  Please rename your input file to input.txt"); 
 		}
-		catch( NoSuchElementException e )
+		catch( IOException e )
 		{ 
 			System.err.println("Error reading element: " + e.getMessage() ); 
 		}
-		catch( IllegalStateException e )
-		{ 
-			System.err.println("Scanner is closed: " + e.getMessage() ); 
+		finally
+		{
+			if( metrics != null )
+				metrics.close();
+			closeCache();
 		}
 		
 	
 	}
 	
+	/** Closes RESULT_CACHE, if there is one, which saves it and releases its file */
+	private static void closeCache()
+	{
+		if( RESULT_CACHE != null )
+		{
+			try
+			{
+				RESULT_CACHE.close();
+			}
+			catch( IOException e )
+			{
+				System.err.println( "Error closing the result cache: " + e.getMessage() );
+			}
+		}
+	}
+	
 	
 }
 
@@ -6,7 +6,9 @@
  * version 0.1
  **/
 
+import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * We separate the fitness calculation from the rest of the program in order to allow
@@ -18,22 +20,228 @@ import java.util.ArrayList;
  * difference between the sums of the groups.  Since we want to minimize fitness, 
  * score of 0 is the best and represents a perfect solution.  
  * 
+ * For inputs too big for the heap the values can be kept in an OffHeap block instead, 
+ * which close frees.  Populations of such an input keep their matrix off the heap too.  
  * 
  * @author Shane McCulley
  *
  */
 public class FitnessCalc {
 	
-	//Instance variable
-	ArrayList<Integer> inputData;
+	//Instance variables.  Unboxed once here so getFitness does not unbox every call.  
+	int[] inputData;			//null when the values are off the heap
+	IntBuffer weights = null;	//The values when they are off the heap, a view of block
+	OffHeap block = null;
+	final int size;				//Number of values, still known after close
+	long total;
+	IntBuffer weightOrder = null;	//Indices of inputData by increasing value, made on first use
+	OffHeap orderBlock = null;	//Memory of weightOrder when the values are off the heap
 		
 	/**
-	 * Initialize inputData to the {@code ArrayList<Integer>} argument. 
+	 * Initialize inputData from the {@code ArrayList<Integer>} argument. 
 	 * @param inputData The input data for instance variable.  
 	 */
 	public FitnessCalc( ArrayList<Integer> inputData)
 	{
-		this.inputData = inputData;
+		this( FindPartition.toArray( inputData ) );
+	}
+	
+	/**
+	 * Initialize inputData to the int array argument.  The array is used as is, not copied.  
+	 * @param inputData The input data for instance variable.  
+	 */
+	public FitnessCalc( int[] inputData )
+	{
+		this( inputData, false );
+	}
+	
+	/**
+	 * Initialize inputData to the int array argument, or copy it off the heap.  
+	 * @param inputData The input data for instance variable.  
+	 * @param offHeap True to copy the values into an OffHeap block, which close frees.  
+	 */
+	public FitnessCalc( int[] inputData, boolean offHeap )
+	{
+		size = inputData.length;
+		for( int value : inputData )
+			total += value;
+		
+		if( offHeap )
+		{
+			block = new OffHeap( (long)size * Integer.BYTES );
+			weights = block.asIntBuffer().put( 0, inputData );
+		}
+		else
+			this.inputData = inputData;
+	}
+	
+	/** @return True if the values are off the heap, so populations of this input should be too */
+	public boolean isOffHeap()
+	{
+		return block != null;
+	}
+	
+	/** 
+	 * Frees the values if they are off the heap.  Genomes whose group sums are known still 
+	 * have a fitness, but one that asks for a weight afterwards gets an IndexOutOfBoundsException.  
+	 */
+	public synchronized void close()
+	{
+		if( block != null )
+		{
+			weights = IntBuffer.allocate( 0 );
+			block.close();
+			block = null;
+		}
+		if( orderBlock != null )
+		{
+			weightOrder = IntBuffer.allocate( 0 );
+			orderBlock.close();
+			orderBlock = null;
+		}
+	}
+	
+	/** @return The number of values in inputData, which is the number of genes in a genome */
+	public int getSize()
+	{
+		return size;
+	}
+	
+	/** @return The value at {@param index} of inputData, which is the weight of gene index */
+	public int getWeight( int index )
+	{
+		return ( inputData != null ) ? inputData[ index ] : weights.get( index );
+	}
+	
+	/**
+	 * Indices of inputData sorted by value, so local search can binary search for the value 
+	 * closest to a target.  Sorted once, on first use.  Synchronized since islands share us.  
+	 * Off the heap the indices are too, so an input of millions of values adds nothing to 
+	 * the heap; close frees them with the values.  Equal values keep their index order.  
+	 * @return weightOrder, where getWeight( weightOrder.get( k ) ) never decreases with k.  
+	 */
+	public synchronized IntBuffer getWeightOrder()
+	{
+		if( weightOrder == null )
+			weightOrder = ( block == null ) ? IntBuffer.wrap( sortOnHeap() ) : sortOffHeap();
+		
+		return weightOrder;
+	}
+	
+	/** @return The indices sorted by value, by sorting value << 32 | index and keeping the indices */
+	private int[] sortOnHeap()
+	{
+		long[] keys = new long[ size ];
+		for( int i = 0; i < size; i++ )
+			keys[ i ] = ( (long)getWeight( i ) << 32 ) | i;
+		Arrays.sort( keys );
+		
+		int[] order = new int[ keys.length ];
+		for( int k = 0; k < keys.length; k++ )
+			order[ k ] = (int)keys[ k ];
+		return order;
+	}
+	
+	/**
+	 * Sorts the indices by value in orderBlock, a byte of the value at a time from the lowest.  
+	 * Each pass is stable, so the indices start in order and equal values keep it, as they do 
+	 * on the heap.  The passes alternate with a scratch block that is freed at the end.  
+	 * @return The sorted indices, a view of orderBlock.  
+	 */
+	private IntBuffer sortOffHeap()
+	{
+		orderBlock = new OffHeap( (long)size * Integer.BYTES );
+		IntBuffer order = orderBlock.asIntBuffer();
+		for( int i = 0; i < size; i++ )
+			order.put( i, i );
+		
+		try( OffHeap scratchBlock = new OffHeap( (long)size * Integer.BYTES ) )
+		{
+			IntBuffer from = order;
+			IntBuffer to = scratchBlock.asIntBuffer();
+			int[] counts = new int[ 257 ];
+			
+			/* Four passes, so the result ends up back in order */
+			for( int shift = 0; shift < 32; shift += 8 )
+			{
+				Arrays.fill( counts, 0 );
+				for( int k = 0; k < size; k++ )
+					counts[ digit( from.get( k ), shift ) + 1 ]++;
+				for( int d = 0; d < 256; d++ )
+					counts[ d + 1 ] += counts[ d ];
+				for( int k = 0; k < size; k++ )
+					to.put( counts[ digit( from.get( k ), shift ) ]++, from.get( k ) );
+				
+				IntBuffer swap = from;
+				from = to;
+				to = swap;
+			}
+		}
+		return order;
+	}
+	
+	/** @return Byte shift / 8 of the value at index, with the sign flipped so negatives sort first */
+	private int digit( int index, int shift )
+	{
+		return ( ( getWeight( index ) ^ Integer.MIN_VALUE ) >>> shift ) & 0xFF;
+	}
+	
+	/** @return The sum of every value in inputData */
+	public long getTotal()
+	{
+		return total;
+	}
+	
+	/**
+	 * Sums the values whose gene is set in one 64 bit word of a genome.  
+	 * @param word The index of the word, gene i of the word is value 64 * word + i.  
+	 * @param bits The set bits to add up.  
+	 * @return The sum of the values at the set bits.  
+	 */
+	public long weightSum( int word, long bits )
+	{
+		long sum = 0;
+		int base = word << 6;
+		
+		while( bits != 0 )
+		{
+			sum += getWeight( base + Long.numberOfTrailingZeros( bits ) );
+			bits &= bits - 1;  // clear lowest set bit
+		}
+		
+		return sum;
+	}
+	
+	/**
+	 * Sums the values in group 1 for a genome by walking only its set bits.  
+	 * The group 0 sum is {@code getTotal()} minus this.  
+	 * @param chromo The genome to sum.  
+	 * @return Sum of values whose gene is 1.  
+	 */
+	public long groupSum( Genome chromo )
+	{
+		long sum = 0;
+		for( int i = chromo.nextSetBit( 0 ); i >= 0; i = chromo.nextSetBit( i + 1 ) )
+			sum += getWeight( i );
+		
+		return sum;
+	}
+	
+	/**
+	 * Fitness from the sums of the two groups, the same value getFitness( Genome ) gives.  
+	 * @param groupSum0 Sum of values in group 0.
+	 * @param groupSum1 Sum of values in group 1.  
+	 * Inputs of millions of values can differ by more than an int holds, so the difference 
+	 * is capped at Integer.MAX_VALUE rather than wrapping around to a negative fitness.  
+	 * @return Absolute difference of the sums, or -1 if inputData is empty.  
+	 */
+	public int getFitness( long groupSum0, long groupSum1 )
+	{
+		if( size == 0 )
+			return -1;
+		
+		long fitness = groupSum0 - groupSum1;
+		return (int)Math.min( (fitness < 0 ) ? -fitness : fitness, Integer.MAX_VALUE ); 
 	}
 	
 	/*
@@ -54,32 +262,27 @@ public class FitnessCalc {
 		/* Fitness should not be negative.  If inputData is empty, we cannot 
 		 * calculate the fitness.  Return -1 for error.  
 		 */
-		if( inputData.isEmpty() )
+		if( size == 0 )
 			return -1;
 		
-		int resultG0 = 0; //group 0, represented by a 0 on BitSet
-		int resultG1 = 0; //group 1, represented by a 1 on BitSet.  
-		int fitness; 
+		long resultG0 = 0; //group 0, represented by a 0 on BitSet
+		long resultG1 = 0; //group 1, represented by a 1 on BitSet.  
 		
 		for( int i = 0; i < chromo.getSize(); i++ )
 		{
 			/* If the Bit at position i is 0, we add to resultG0 */
 			if( chromo.getGene( i ) == 0)
 			{
-				resultG0 += inputData.get( i );	
+				resultG0 += getWeight( i );	
 			}
-			else if ( chromo.getGene( i ) == 1 )
+			else
 			{
-				resultG1 += inputData.get( i );
+				resultG1 += getWeight( i );
 			}
-			else
-				System.err.println("Error at FitnessCalc.getFitness on index " + i );
-			
 		}
 		
-		fitness = resultG0 - resultG1;
-		/*return absolute value of G0 - G1 */
-		return (fitness < 0 ) ? -fitness : fitness; 
+		/*return absolute value of G0 - G1, capped as the sums may not fit an int */
+		return getFitness( resultG0, resultG1 ); 
 	}
 	
 	
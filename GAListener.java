@@ -0,0 +1,27 @@
+/*
+ * Bonus Assignment #1
+ * CSCI 3102 Fall 2014
+ * author Shane McCulley
+ * date October 11, 2014
+ * version 0.1
+ **/
+
+/**
+ * Receives the counters and timings of every CHC generation.  Give one to a FindPartition
+ * before calling solve, or name a file with -metrics to have MetricsWriter record them.
+ * 
+ * With no listener an island only checks a null field a few times per generation, so runs
+ * that do not ask for metrics pay next to nothing for them.  
+ * 
+ * @author Shane McCulley
+ */
+public interface GAListener
+{
+	/**
+	 * Called at the end of every generation, on the thread of the island that ran it.  
+	 * With several islands it can be called from several threads at once.  
+	 * @param stats The generation's numbers.  The island reuses this object for its next 
+	 * generation, so a listener that keeps them must copy them.  
+	 */
+	void generationDone( GenerationStats stats );
+}
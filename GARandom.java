@@ -0,0 +1,175 @@
+/*
+ * Bonus Assignment #1
+ * CSCI 3102 Fall 2014
+ * author Shane McCulley
+ * date October 11, 2014
+ * version 0.1
+ **/
+
+/**
+ * The random number generator every part of the algorithm draws from: creating genomes,
+ * pairing, HUX seeds and cataclysm mutation.  A run makes one from its seed and hands it
+ * down, so two runs with the same seed make the same choices and can be replayed.
+ *
+ * It is SplitMix64 (Steele, Lea and Flood 2014): the state advances by a fixed odd
+ * constant and each output is a mix of the state, so a draw is an add and a few multiplies
+ * with no synchronization.  One generator must only be used by one thread at a time.
+ * A thread that needs its own stream takes one with split(), which seeds a new generator
+ * from this one, so the streams of a run still follow from its seed.
+ *
+ * nextLong gives 64 random bits at once, which fills a whole word of genes.
+ *
+ * @author Shane McCulley
+ */
+public class GARandom
+{
+	/* Golden ratio constant the state advances by */
+	private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+	/* Makes unseeded generators created in the same nanosecond differ */
+	private static long seedUniquifier = 0x5DEECE66DL;
+
+	//Instance variables
+	private long seed;            //Kept so a run can report how to replay it
+	private long state;
+
+	/** Creates a generator with a seed that differs from run to run */
+	public GARandom()
+	{
+		this( nextUnseeded() ^ System.nanoTime() );
+	}
+
+	/** Creates a generator that gives the same numbers for the same {@param seed} */
+	public GARandom( long seed )
+	{
+		this.seed = seed;
+		this.state = seed;
+	}
+
+	private static synchronized long nextUnseeded()
+	{
+		seedUniquifier += GAMMA;
+		return mix( seedUniquifier );
+	}
+
+	/** @return The seed this generator started from */
+	public long getSeed()
+	{
+		return seed;
+	}
+
+	/** @return The current state.  With the seed it is all a checkpoint needs to continue our numbers */
+	public long getState()
+	{
+		return state;
+	}
+	
+	/**
+	 * Continues the numbers of a generator saved by a checkpoint.  
+	 * @param seed The saved generator's seed, so reports still name the run's seed.  
+	 * @param state The saved generator's state.  
+	 */
+	public void restore( long seed, long state )
+	{
+		this.seed = seed;
+		this.state = state;
+	}
+
+	/** SplitMix64 output function {@param z State to mix} @return 64 well mixed bits */
+	private static long mix( long z )
+	{
+		z = ( z ^ ( z >>> 30 ) ) * 0xBF58476D1CE4E5B9L;
+		z = ( z ^ ( z >>> 27 ) ) * 0x94D049BB133111EBL;
+		return z ^ ( z >>> 31 );
+	}
+
+	/** @return 64 random bits */
+	public long nextLong()
+	{
+		state += GAMMA;
+		return mix( state );
+	}
+
+	/** @return A random int in [0, bound).  {@param bound Upper bound, must be positive} */
+	public int nextInt( int bound )
+	{
+		if( bound <= 0 )
+			throw new IllegalArgumentException( "bound must be positive: " + bound );
+
+		/* Lemire's multiply and shift, rejecting the few values that would bias low results */
+		long product = ( nextLong() >>> 32 ) * bound;
+		if( ( product & 0xFFFFFFFFL ) < bound )
+		{
+			long threshold = ( 0x100000000L - bound ) % bound;
+			while( ( product & 0xFFFFFFFFL ) < threshold )
+				product = ( nextLong() >>> 32 ) * bound;
+		}
+		return (int)( product >>> 32 );
+	}
+
+	/** @return A random double in [0, 1) with 53 random bits */
+	public double nextDouble()
+	{
+		return ( nextLong() >>> 11 ) * 0x1.0p-53;
+	}
+
+	/** @return A random boolean */
+	public boolean nextBoolean()
+	{
+		return nextLong() < 0;
+	}
+
+	/**
+	 * 64 independent random bits, each 1 with chance probability rounded to a multiple of 
+	 * 1/65536.  Writing probability in binary as 0.b1 b2 ... b16, we start from the lowest 
+	 * digit that is 1 and for every digit up to b1 combine a fresh random word into the mask: 
+	 * or for a 1 digit, which takes each bit's chance p to (1 + p) / 2, and for a 0 digit, 
+	 * which takes it to p / 2.  That is at most 16 draws for 64 bits.  
+	 * @param probability Chance of each bit being 1.  
+	 * @return The mask.  
+	 */
+	public long nextMask( double probability )
+	{
+		int digits = (int)Math.round( probability * 65536 );
+		if( digits <= 0 )
+			return 0L;
+		if( digits >= 65536 )
+			return -1L;
+
+		long mask = 0;
+		for( int digit = Integer.numberOfTrailingZeros( digits ); digit < 16; digit++ )
+		{
+			if( ( ( digits >>> digit ) & 1 ) != 0 )
+				mask |= nextLong();
+			else
+				mask &= nextLong();
+		}
+		return mask;
+	}
+
+	/**
+	 * Creates a new generator for another thread, seeded from this one.  Splitting in the
+	 * same order gives the same generators, so a parallel run is still decided by its seed.
+	 * @return A generator whose numbers are independent of ours.
+	 */
+	public GARandom split()
+	{
+		return new GARandom( mix( nextLong() ) );
+	}
+
+	/**
+	 * Shuffles the first count entries of values into a random order, Fisher-Yates.
+	 * @param values Array to shuffle in place.
+	 * @param count Number of entries at the front to shuffle.
+	 */
+	public void shuffle( int[] values, int count )
+	{
+		for( int i = count - 1; i > 0; i-- )
+		{
+			int j = nextInt( i + 1 );
+			int swap = values[ i ];
+			values[ i ] = values[ j ];
+			values[ j ] = swap;
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Bonus Assignment #1
+ * CSCI 3102 Fall 2014
+ * author Shane McCulley
+ * date October 11, 2014
+ * version 0.1
+ **/
+
+/**
+ * Counters and timings of one CHC generation on one island, handed to a GAListener.  
+ * The counters cover only that generation, so summing a column gives the run's total.  
+ * 
+ * The times are split into the phases of Island.evolve: pairing shuffles the population, 
+ * crossover tests every pair against delta and creates the children, selection keeps the 
+ * best POP_SIZE (and hill climbs them in memetic mode), and cataclysm covers both natural 
+ * and forced cataclysms with the reseeding after them.  
+ * 
+ * @author Shane McCulley
+ */
+public class GenerationStats
+{
+	//Which generation these are
+	public int run;               //Number of the FindPartition, in the order they were made
+	public int island;            //0 unless -islands is used
+	public int generation;        //Counts from 1 on each island
+	
+	//Counters of this generation
+	public long evaluations;      //Genomes whose fitness was computed, counted by Population where it computes one
+	public int pairsTested;
+	public int pairsRejected;     //Pairs whose Hamming distance / 2 was not above delta
+	public int children;
+	
+	//State after this generation
+	public int delta;
+	public int restarts;
+	public int bestFitness;       //Best fitness found so far on this island
+	public double meanFitness;    //Mean fitness of the population after selection
+	
+	//Nanoseconds spent in each phase of this generation
+	public long pairingNanos;
+	public long crossoverNanos;
+	public long selectionNanos;
+	public long cataclysmNanos;
+	
+	/** @return A copy, for listeners that keep the numbers of several generations */
+	public GenerationStats copy()
+	{
+		GenerationStats copy = new GenerationStats();
+		copy.run = run;
+		copy.island = island;
+		copy.generation = generation;
+		copy.evaluations = evaluations;
+		copy.pairsTested = pairsTested;
+		copy.pairsRejected = pairsRejected;
+		copy.children = children;
+		copy.delta = delta;
+		copy.restarts = restarts;
+		copy.bestFitness = bestFitness;
+		copy.meanFitness = meanFitness;
+		copy.pairingNanos = pairingNanos;
+		copy.crossoverNanos = crossoverNanos;
+		copy.selectionNanos = selectionNanos;
+		copy.cataclysmNanos = cataclysmNanos;
+		return copy;
+	}
+	
+	/** @return The column names of toCsv, comma separated */
+	public static String csvHeader()
+	{
+		return "run,island,generation,evaluations,pairsTested,pairsRejected,children,delta,restarts,"
+			 + "bestFitness,meanFitness,pairingNanos,crossoverNanos,selectionNanos,cataclysmNanos";
+	}
+	
+	/** @return These numbers as one CSV line without the line break, in the order of csvHeader */
+	public String toCsv()
+	{
+		return run + "," + island + "," + generation + "," + evaluations + "," + pairsTested + "," 
+			 + pairsRejected + "," + children + "," + delta + "," + restarts + "," + bestFitness + "," 
+			 + meanFitness + "," + pairingNanos + "," + crossoverNanos + "," + selectionNanos + "," 
+			 + cataclysmNanos;
+	}
+	
+	/** @return These numbers as one JSON object on one line, keys named as in csvHeader */
+	public String toJson()
+	{
+		String[] names = csvHeader().split( "," );
+		String[] values = toCsv().split( "," );
+		
+		StringBuilder json = new StringBuilder( "{" );
+		for( int i = 0; i < names.length; i++ )
+		{
+			if( i > 0 )
+				json.append( ", " );
+			json.append( '"' ).append( names[ i ] ).append( "\": " ).append( values[ i ] );
+		}
+		return json.append( '}' ).toString();
+	}
+}
@@ -6,101 +6,328 @@
  * version 0.1
  */
 
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
 import java.util.BitSet;
-import java.util.Random;
-import java.util.ArrayList;
+import java.util.Arrays;
 
 /** 
- * Models an individual gene in our population using BitSet container with 
+ * Models an individual gene in our population using an array of 64 bit words with 
  * a size determined by the constructor.  Each component has a boolean value and 
- * takes up 1 bit instead of 8 bytes for a standard boolean type.   
+ * takes up 1 bit instead of 8 bytes for a standard boolean type.  Gene i lives in 
+ * bit (i % 64) of word (base + i / 64).  Bits past geneSize in the last word are always 0, 
+ * so whole-word operations like bitCount and equals never see garbage.  
+ *  
+ * A genome either owns its words (base is 0) or is a view of one row in the shared 
+ * matrix of a Population, in which case base is the offset of that row.  The words are 
+ * a long[], or for a population off the heap a LongBuffer view of an OffHeap block.  
+ * Every access goes through word and setWord, whose test of which one we have is the 
+ * same on every pass of a loop, so the JIT moves it out and array loops stay as they were.  
  *  
  *  @author Shane McCulley
  */
 public class Genome implements Comparable<Genome>
 {
-	//Instance variables.  We only need one instance of FitnessCalc, so it is static
+	/* Below this mutation rate mutateInto skips between flips, at or above it it draws whole words of flips.  
+	 * The two cost the same at about 0.035 on 30000 genes */
+	final static double SKIP_RATE = 1.0 / 32;
+	
+	//Instance variables.  Every genome of one input shares the same FitnessCalc, which also 
+	//decides geneSize.  Keeping it per genome lets several inputs be solved at the same time.  
 	private final int geneSize;
-	private BitSet genes;
-	private static FitnessCalc fitnessCalc;
+	private final int words;      //Number of words in genes that belong to this genome
+	private long[] genes;         //Our words when they are on the heap, else null
+	private LongBuffer buffer;    //Our words when they are off the heap, else null
+	private int base;             //Index in genes or buffer of our first word
+	private final FitnessCalc fitnessCalc;
+	
+	/* Sums of the input values in group 0 and group 1.  They are computed in full the first 
+	 * time fitness is asked for, then kept up to date by flipGene and swapGenes so a changed 
+	 * genome only pays for the genes that moved.  Fitness is derived from them.  */
+	private long groupSum0;
+	private long groupSum1;
+	private boolean sumsKnown = false;
+	
+	/* Zobrist hash of the genes: the xor of zobristKey( i ) over every set gene i.  Like the 
+	 * sums it is computed in full the first time it is asked for, then flipGene and swapGenes 
+	 * keep it current with one xor per change.  Population uses it to find duplicates.  */
+	private long zobrist;
+	private boolean zobristKnown = false;
+	
+	/**
+	 * Constructor creates a gene with one bit per input value with
+	 * random data, drawn from a new generator.  
+	 * @param fitnessCalc Fitness of the input this genome partitions.  
+	 */
+	public Genome( FitnessCalc fitnessCalc ) 
+	{
+		this( fitnessCalc, new GARandom() );
+	}
 	
 	/**
-	 * Constructor creates a gene with geneSize number of bits with
-	 * random data.  ThsBitSet constructs with all 0's, 
-	 * so we only need to set 1's.    
-	 * @param geneSize The number of bits for this gene.   
+	 * Constructor creates a gene with one bit per input value with random data.  
+	 * @param fitnessCalc Fitness of the input this genome partitions.  
+	 * @param rand Source of the random genes.  
 	 */
-	public Genome( int geneSize ) 
+	public Genome( FitnessCalc fitnessCalc, GARandom rand ) 
 	{
 		/* Set our instance variables */
-		this.geneSize = geneSize;
-		genes = new BitSet( geneSize );
+		this( fitnessCalc, new long[ wordsFor( fitnessCalc.getSize() ) ], 0 );
 
+		randomizeGenes( rand );
+	}
+	
+	/**
+	 * Constructor initializes geneSize and copies someGenes into genes.  Does not randomize
+	 * or change any genes contained in someGenes.  Bits at or past geneSize are ignored.  
+	 * @param fitnessCalc Fitness of the input this genome partitions.  
+	 * @param someGenes a BitSet to copy into this genome.   
+	 */
+	public Genome( FitnessCalc fitnessCalc, BitSet someGenes )
+	{
+		this( fitnessCalc, new long[ wordsFor( fitnessCalc.getSize() ) ], 0 );
 		
-		/* Create random number generator and populate */
-		Random rand = new Random();
-		
-		for( int i = 0; i < geneSize; i++ )
+		long[] source = someGenes.toLongArray();
+		System.arraycopy( source, 0, genes, 0, Math.min( source.length, words ) );
+		clearTail();
+	}
+	
+	/**
+	 * Constructor wraps words of an existing array.  The array is used as is, not copied, 
+	 * so callers must hand over words nobody else writes to.  Population uses the buffer 
+	 * form below to make a genome view of one row of its matrix.  
+	 * @param fitnessCalc Fitness of the input, one gene per input value. 
+	 * @param store Array holding the genes in wordsFor( geneSize ) words starting at base.  
+	 * @param base Index in store of the first word.  
+	 */
+	Genome( FitnessCalc fitnessCalc, long[] store, int base )
+	{
+		this.fitnessCalc = fitnessCalc;
+		this.geneSize = fitnessCalc.getSize();
+		this.words = wordsFor( geneSize );
+		this.genes = store;
+		this.base = base;
+	}
+
+	/**
+	 * Same as {@link #Genome(FitnessCalc, long[], int)} on words of a buffer, which may be 
+	 * off the heap.  A buffer wrapping an array is unwrapped to the array.  
+	 * @param fitnessCalc Fitness of the input, one gene per input value. 
+	 * @param store Buffer holding the genes in wordsFor( geneSize ) words starting at base.  
+	 * @param base Index in store of the first word.  
+	 */
+	Genome( FitnessCalc fitnessCalc, LongBuffer store, int base )
+	{
+		this( fitnessCalc, (long[])null, 0 );
+		rebind( store, base );
+	}
+
+	/** Points this view at a new buffer after Population grows or frees its matrix */
+	void rebind( LongBuffer store, int base )
+	{
+		if( store.hasArray() )
 		{
-			// True if nextBoolean returns 1, false if 0. 
-			if( rand.nextBoolean() )
-			{
-				genes.set( i );  // Sets gene at index i to 1
-			}
+			this.genes = store.array();
+			this.buffer = null;
+			this.base = store.arrayOffset() + base;
 		}
-			
+		else
+		{
+			this.genes = null;
+			this.buffer = store;
+			this.base = base;
+		}
+	}
+	
+	/** @return Word w of our genes */
+	private long word( int w )
+	{
+		return ( buffer == null ) ? genes[ base + w ] : buffer.get( base + w );
+	}
+	
+	/** Sets word w of our genes to {@param value} */
+	private void setWord( int w, long value )
+	{
+		if( buffer == null )
+			genes[ base + w ] = value;
+		else
+			buffer.put( base + w, value );
+	}
+
+	/** Writes our words of genes to {@param out}, which needs words * 8 bytes remaining */
+	void writeGenes( ByteBuffer out )
+	{
+		for( int w = 0; w < words; w++ )
+			out.putLong( word( w ) );
+	}
+	
+	/** Reads our words of genes written by writeGenes from {@param in} and forgets the group sums */
+	void readGenes( ByteBuffer in )
+	{
+		for( int w = 0; w < words; w++ )
+			setWord( w, in.getLong() );
+		
+		sumsKnown = false;
+		zobristKnown = false;
+	}
+
+	/** Sets every gene to a random value and forgets the group sums {@param rand Source of the genes} */
+	void randomizeGenes( GARandom rand )
+	{
+		/* Each nextLong is 64 random genes, one word */
+		for( int w = 0; w < words; w++ )
+			setWord( w, rand.nextLong() );
+
+		clearTail();
+		sumsKnown = false;
+		zobristKnown = false;
+	}
+	
+	/** @return Number of 64 bit words needed to hold {@param geneSize} bits */
+	static int wordsFor( int geneSize )
+	{
+		return ( geneSize + 63 ) >>> 6;
 	}
 	
 	/**
-	 * Constructor initializes geneSize and copies someGenes into genes.  Does not randomize
-	 * or change any genes contained in someGenes
-	 * @param geneSize The number of bits for this gene. 
-	 * @param someGenes a BitSet to copy into this genome.   
+	 * Random looking 64 bit key of gene index, the SplitMix64 finalizer of the index.  
+	 * It depends on nothing but the index, so equal genomes hash the same for any input.  
+	 * @param index The gene.  
+	 * @return The key xor'ed into the Zobrist hash while gene index is set.  
 	 */
-	public Genome( int geneSize, BitSet someGenes )
+	static long zobristKey( int index )
 	{
-		this.geneSize = geneSize;
-		this.genes = someGenes;
+		long z = ( index + 1 ) * 0x9E3779B97F4A7C15L;
+		z = ( z ^ ( z >>> 30 ) ) * 0xBF58476D1CE4E5B9L;
+		z = ( z ^ ( z >>> 27 ) ) * 0x94D049BB133111EBL;
+		return z ^ ( z >>> 31 );
+	}
+	
+	/** Zeroes the unused bits of the last word so whole-word operations stay exact */
+	private void clearTail()
+	{
+		if( ( geneSize & 63 ) != 0 )
+			setWord( words - 1, word( words - 1 ) & ( ( 1L << geneSize ) - 1 ) );
 	}
 	
 	/** 
 	 * Copy constructor returns a new genome with the same instance variables as copyGenome.
+	 * The genes are copied, so changing the copy never changes copyGenome.  
 	 * @param copyGenome Genome to copy.  geneSize is taken from .getSize() method.
 	 * @return A new genome with the same instance variables.  
 	 */
 	public static Genome copyOf( Genome copyGenome )
 	{
-		return new Genome( copyGenome.geneSize, copyGenome.genes );
+		Genome copy = new Genome( copyGenome.fitnessCalc, new long[ copyGenome.words ], 0 );
+		copyGenome.copyInto( copy );
+		
+		return copy;
+	}
+
+	/**
+	 * Overwrites target's genes and group sums with ours.  Used to fill a Population row 
+	 * without creating a new genome.  
+	 * @param target A genome of the same size.  
+	 */
+	void copyInto( Genome target )
+	{
+		if( target.buffer == null && this.buffer == null )
+			System.arraycopy( this.genes, this.base, target.genes, target.base, words );
+		else if( target.buffer == null )
+			this.buffer.get( this.base, target.genes, target.base, words );
+		else if( this.buffer == null )
+			target.buffer.put( target.base, this.genes, this.base, words );
+		else
+			target.buffer.put( target.base, this.buffer, this.base, words );
+		target.groupSum0 = this.groupSum0;
+		target.groupSum1 = this.groupSum1;
+		target.sumsKnown = this.sumsKnown;
+		target.zobrist = this.zobrist;
+		target.zobristKnown = this.zobristKnown;
 	}
 	
-	/** Modifies calling object by xor'ing with {@param swapGenome the genome to swap genes with} */
+	/**
+	 * Modifies calling object by xor'ing with {@param swapGenome the genome to swap genes with}
+	 * If our group sums are known, only the weights at the set bits of swapGenome are moved
+	 * between groups, so the cost is the number of swapped genes rather than geneSize.  
+	 */
 	public void swapGenes( Genome swapGenome )
 	{
-		/* The genes of the calling object use binary xor with swapGenome's genes */
-		this.genes.xor( swapGenome.genes );
+		/* xor is linear, so our new hash is our hash xor the hash of the swapped genes */
+		if( zobristKnown )
+			zobrist ^= swapGenome.zobristHash();
+		
+		for( int w = 0; w < words; w++ )
+		{
+			long mask = swapGenome.word( w );
+			moveWord( w, mask );
+			
+			/* The genes of the calling object use binary xor with swapGenome's genes */
+			setWord( w, word( w ) ^ mask );
+		}
 	}
 	
+	/** Moves the weights of the genes set in mask in word w to their other group, if the sums are known */
+	private void moveWord( int w, long mask )
+	{
+		if( sumsKnown && mask != 0 )
+		{
+			/* Genes that are 1 here move to group 0, genes that are 0 here move to group 1 */
+			long word = word( w );
+			long moved = fitnessCalc.weightSum( w, mask & word )
+					   - fitnessCalc.weightSum( w, mask & ~word );
+			groupSum0 += moved;
+			groupSum1 -= moved;
+		}
+	}
 	
-	/**
-	 * Static method to be called on the class Genome itself to set 
-	 * fitnessCalc.  We only need one instance of fitnessCalc as it 
-	 * only calculates fitness using the same criteria.  Class Genome
-	 * needs access to the fitness in order to implement Comparable.
-	 *   
-	 * @param inputData An ArrayList of integers from input file.   
-	 */
-	public static void setFitnessCalc( ArrayList<Integer> inputData )
+	
+	/** @return The fitness calculator of the input this genome partitions */
+	public FitnessCalc getFitnessCalc()
 	{
-		fitnessCalc = new FitnessCalc( inputData );
+		return fitnessCalc;
 	}
 	
 	/**
-	 * Return the fitness value of the genome that calls this function.  
+	 * Return the fitness value of the genome that calls this function.  The group sums 
+	 * are calculated in full once, after that flipGene and swapGenes keep them current.  
 	 * @return Fitness value greater than or equal to 0.  
 	 */
 	public int getFitness()
 	{
-		return fitnessCalc.getFitness( this );
+		if( !sumsKnown )
+		{
+			groupSum1 = fitnessCalc.groupSum( this );
+			groupSum0 = fitnessCalc.getTotal() - groupSum1;
+			sumsKnown = true;
+		}
+		
+		return fitnessCalc.getFitness( groupSum0, groupSum1 );
+	}
+	
+	/** @return Sum of group 0 minus sum of group 1, the signed form of the fitness */
+	long sumDifference()
+	{
+		getFitness();
+		return groupSum0 - groupSum1;
+	}
+	
+	/**
+	 * Zobrist hash of the genes, computed in full once and then kept current by flipGene 
+	 * and swapGenes.  Equal genomes always have equal hashes.  
+	 * @return The xor of zobristKey( i ) over every set gene i.  
+	 */
+	public long zobristHash()
+	{
+		if( !zobristKnown )
+		{
+			zobrist = 0;
+			for( int i = nextSetBit( 0 ); i >= 0; i = nextSetBit( i + 1 ) )
+				zobrist ^= zobristKey( i );
+			zobristKnown = true;
+		}
+		
+		return zobrist;
 	}
 	
 	/** @return The size of our genome */
@@ -109,20 +336,38 @@ public class Genome implements Comparable<Genome>
 		return this.geneSize;
 	}
 	
-	/** @return Returns {@code genes.cardinality()} which is the number of 1's set.  */
+	/** @return Returns the number of 1's set, counted a word at a time with bitCount.  */
 	public int cardinality()
 	{
-		return this.genes.cardinality();
+		int count = 0;
+		for( int w = 0; w < words; w++ )
+			count += Long.bitCount( word( w ) );
+		
+		return count;
 	}
 	
 	/**
 	 * Returns the next set bit from fromIndex inclusive.    
 	 * @param fromIndex the index to start checking for a set bit. 
-	 * @return the first index encountered with a bit set.  
+	 * @return the first index encountered with a bit set, or -1 if there is none.  
 	 */
 	public int nextSetBit( int fromIndex )
 	{
-		return this.genes.nextSetBit( fromIndex );
+		if( fromIndex >= geneSize )
+			return -1;
+		
+		/* Mask off the bits below fromIndex in the first word, then skip empty words */
+		int w = fromIndex >>> 6;
+		long word = word( w ) & ( -1L << fromIndex );
+		
+		while( word == 0 )
+		{
+			if( ++w == words )
+				return -1;
+			word = word( w );
+		}
+		
+		return ( w << 6 ) + Long.numberOfTrailingZeros( word );
 	}
 	
 	/**
@@ -132,20 +377,26 @@ public class Genome implements Comparable<Genome>
 	 */
 	public int getGene( int index )
 	{
-		int result; 
-		// If the value is 1 at index, this returns true
-		if( genes.get( index ) )
-			result = 1;
-		else
-			result = 0;
-		
-		return result;
+		// Shift the bit at index down to position 0 of its word
+		return (int)( ( word( index >>> 6 ) >>> index ) & 1L );
 	}
 	
 	/** Flips a gene {@param index The index to flip in genes */
 	public void flipGene( int index )
 	{
-		genes.flip( index );
+		if( sumsKnown )
+		{
+			/* Move the value at index to the other group */
+			int weight = fitnessCalc.getWeight( index );
+			if( getGene( index ) == 1 )
+				weight = -weight;
+			
+			groupSum0 -= weight;
+			groupSum1 += weight;
+		}
+		if( zobristKnown )
+			zobrist ^= zobristKey( index );
+		setWord( index >>> 6, word( index >>> 6 ) ^ ( 1L << index ) );
 	}
 	
 	/**
@@ -157,40 +408,96 @@ public class Genome implements Comparable<Genome>
 	{
 		int distance = 0;
 		
-		for( int i = 0; i < geneSize; i++)
-		{
-			// if the bits are not equal at index i, increment distance
-			if( this.getGene( i ) != chromo.getGene( i ) )
-				distance++;
-		}
+		// xor leaves a 1 wherever the words differ, bitCount counts them
+		for( int w = 0; w < words; w++ )
+			distance += Long.bitCount( word( w ) ^ chromo.word( w ) );
 		
 		return distance;
 	}
 	
 	public Genome mutateGenome( double mutationRate )
 	{
-		Random randomGenerator = new Random();
-		BitSet mutatedGenes = new BitSet( this.geneSize );
+		return mutateGenome( mutationRate, new GARandom() );
+	}
+	
+	/** 
+	 * @param mutationRate Chance that any one gene is flipped.  
+	 * @param rand Source of the random choices.  
+	 * @return A new genome, a mutation of this one.  
+	 */
+	public Genome mutateGenome( double mutationRate, GARandom rand )
+	{
+		Genome mutant = new Genome( fitnessCalc, new long[ words ], 0 );
+		mutateInto( mutant, mutationRate, rand );
+
+		return mutant;
+	}
+
+	/**
+	 * Writes a mutation of this genome into mutant, flipping each gene with probability 
+	 * mutationRate.  Population uses this to refill its rows during a cataclysm.  Our words 
+	 * are copied in bulk and only the flipped genes are visited, so the cost follows the 
+	 * number of flips, not one random draw per gene.  We are only read, so several threads 
+	 * may mutate the same genome into different rows once its sums are known.  
+	 * @param mutant A genome of the same size whose genes are overwritten.  
+	 * @param mutationRate Chance that any one gene is flipped.  
+	 * @param randomGenerator Source of the random choices.  
+	 */
+	void mutateInto( Genome mutant, double mutationRate, GARandom randomGenerator )
+	{
+		/* Start from a copy of our words and sums, and only touch the genes that mutate.  
+		 * getFitness makes sure our sums are known so the mutant can update them per flip. */
+		getFitness();
+		copyInto( mutant );
+		
+		if( mutationRate <= 0 )
+			return;
 		
-		for( int i = 0; i < geneSize; i++ )
+		if( mutationRate < SKIP_RATE )
 		{
-			/* Generate a number in between 0, 1. */
-			double nextDouble = randomGenerator.nextDouble();
-			
-			/* Retrieve value from bestGenome */
-			boolean geneValue = this.genes.get( i );
+			/* Instead of a draw per gene, draw how many genes to skip before the next flip.  
+			 * Each gene flips with chance mutationRate, so the skip is geometric: 
+			 * floor( log( U ) / log( 1 - mutationRate ) ) for U uniform in (0, 1].  */
+			double logKeep = Math.log( 1.0 - mutationRate );
 			
-			/* If nextDouble is less than mutation rate, we will mutate geneValue */
-			if( nextDouble <= mutationRate )
+			for( long i = skip( logKeep, randomGenerator ); i < geneSize; i += 1 + skip( logKeep, randomGenerator ) )
+				mutant.flipGene( (int)i );
+		}
+		else
+		{
+			/* At higher rates most skips are 0 or 1 and the log costs more than it saves.  
+			 * Draw a whole word of flips at once and xor it in, as swapGenes does */
+			for( int w = 0; w < words; w++ )
 			{
-				geneValue = !geneValue;
+				long mask = randomGenerator.nextMask( mutationRate );
+				if( w == words - 1 && ( geneSize & 63 ) != 0 )
+					mask &= ( 1L << geneSize ) - 1;
+				
+				mutant.moveWord( w, mask );
+				if( mutant.zobristKnown )
+					mutant.zobrist ^= zobristWord( w, mask );
+				mutant.setWord( w, mutant.word( w ) ^ mask );
 			}
-			
-			/* Now we set mutatedGenes equal to geneValue. (index, boolean value) */
-			mutatedGenes.set( i, geneValue );
 		}
-		return new Genome( this.geneSize, mutatedGenes );
-		
+	}
+	
+	/** @return The xor of zobristKey over the genes set in bits of word w */
+	private static long zobristWord( int w, long bits )
+	{
+		long hash = 0;
+		while( bits != 0 )
+		{
+			hash ^= zobristKey( ( w << 6 ) + Long.numberOfTrailingZeros( bits ) );
+			bits &= bits - 1;
+		}
+		return hash;
+	}
+	
+	/** @return Number of genes to leave alone before the next flip, see mutateInto */
+	private static long skip( double logKeep, GARandom randomGenerator )
+	{
+		/* 1 - nextDouble is in (0, 1], so the log is finite.  The cast caps huge skips */
+		return (long)( Math.log( 1.0 - randomGenerator.nextDouble() ) / logKeep );
 	}
 	/**
 	 * Calculates the bitDifference between 2 genomes.  This is used to create children by
@@ -201,19 +508,31 @@ public class Genome implements Comparable<Genome>
 	 */
 	public Genome bitDifference( Genome chromo )
 	{
-		//Initialize BitSet of size geneSize.  
-		BitSet bitDifference = new BitSet( geneSize );
+		Genome difference = new Genome( fitnessCalc, new long[ words ], 0 );
+		bitDifference( chromo, difference );
+		return difference;
+	}
 		
-		for( int i = 0; i < geneSize; i++ )
-		{
-			// If the bits are not equal at index i, set bDifference at that index
-			if( this.getGene( i ) != chromo.getGene( i ) )
-				bitDifference.set( i );		
-		}
+	/**
+	 * Same as {@link #bitDifference(Genome)}, written into target instead of a new genome, 
+	 * so a mating pass can reuse one scratch genome for every pair.  
+	 * @param chromo The second genome to compare with.  
+	 * @param target Genome of the same size that receives the difference.  
+	 */
+	public void bitDifference( Genome chromo, Genome target )
+	{
+		// xor sets a bit wherever the two genomes are not equal
+		for( int w = 0; w < words; w++ )
+			target.setWord( w, word( w ) ^ chromo.word( w ) );
 		
-		return ( new Genome( geneSize, bitDifference ) );
+		target.sumsKnown = false;
 		
+		/* Hash of the xor is the xor of the hashes, if we have them already */
+		target.zobristKnown = this.zobristKnown && chromo.zobristKnown;
+		if( target.zobristKnown )
+			target.zobrist = this.zobrist ^ chromo.zobrist;
 	}
+		
 	
 	/**
 	 *  Compares genome by fitness calculated from fitnessCalc.
@@ -223,9 +542,8 @@ public class Genome implements Comparable<Genome>
 	 */
 	public int compareTo( Genome chromo ) 
 	{
-		//We subtract the fitness of this object and chromo.  
-		int result = fitnessCalc.getFitness( this ) 
-				   - fitnessCalc.getFitness( chromo );
+		//We subtract the cached fitness of this object and chromo.  
+		int result = this.getFitness() - chromo.getFitness();
 		
 		return result;
 	}
@@ -240,14 +558,41 @@ public class Genome implements Comparable<Genome>
 	{
 		Genome chromo = (Genome)obj;
 		
-		/* Genomes are equal if their underlying BitSets are equal.  This assumes they are
+		/* Genomes are equal if their underlying words are equal.  This assumes they are
 		 * the same size as well as they would not be equal if one was longer */
-		return ( (this.genes).equals(chromo.genes) );
+		if( this.buffer == null && chromo.buffer == null )
+			return Arrays.equals( this.genes, this.base, this.base + this.words, 
+								  chromo.genes, chromo.base, chromo.base + chromo.words );
+		
+		if( this.words != chromo.words )
+			return false;
+		for( int w = 0; w < words; w++ )
+		{
+			if( word( w ) != chromo.word( w ) )
+				return false;
+		}
+		return true;
+	}
+	
+	/** @return Hash of the genes from the Zobrist hash, consistent with equals */
+	public int hashCode()
+	{
+		return Long.hashCode( zobristHash() );
 	}
 	
+	/** @return The indices of set genes in the same {0, 2, 5} form BitSet uses */
 	public String toString()
 	{
-		return genes.toString();
+		StringBuilder result = new StringBuilder( "{" );
+		
+		for( int i = nextSetBit( 0 ); i >= 0; i = nextSetBit( i + 1 ) )
+		{
+			if( result.length() > 1 )
+				result.append( ", " );
+			result.append( i );
+		}
+		
+		return result.append( "}" ).toString();
 	}
 
 }
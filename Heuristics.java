@@ -0,0 +1,150 @@
+/*
+ * Bonus Assignment #1
+ * CSCI 3102 Fall 2014
+ * author Shane McCulley
+ * date October 11, 2014
+ * version 0.1
+ **/
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Fast partitions of the input built without any search, used to seed a population so CHC
+ * starts near the best fitness instead of spending generations getting there.  Both run in
+ * O(n log n).
+ *
+ * Greedy sorts the values from largest to smallest and puts each in the group with the
+ * smaller sum.  Karmarkar-Karp (largest differencing, 1982) repeatedly takes the two largest
+ * values and replaces them with their difference, which commits them to opposite groups;
+ * it usually ends far closer to 0 than greedy.
+ *
+ * Both work on absolute values.  A negative value in one group changes the difference of the
+ * sums exactly as its absolute value in the other group would, so each negative value's gene
+ * is flipped at the end.
+ *
+ * @author Shane McCulley
+ */
+public class Heuristics
+{
+	/**
+	 * Partitions the input with the Karmarkar-Karp largest differencing method.
+	 * @param fitnessCalc Holds the input values.
+	 * @return The partition as a genome.
+	 */
+	public static Genome karmarkarKarp( FitnessCalc fitnessCalc )
+	{
+		int n = fitnessCalc.getSize();
+
+		/* Max heap of value indices keyed by their remaining difference */
+		long[] key = new long[ n ];
+		int[] heap = new int[ n ];
+		for( int i = 0; i < n; i++ )
+		{
+			key[ i ] = Math.abs( (long)fitnessCalc.getWeight( i ) );
+			heap[ i ] = i;
+		}
+		for( int i = n / 2 - 1; i >= 0; i-- )
+			siftDown( heap, n, i, key );
+
+		/* Each step puts small in the opposite group of large, recorded in merge order */
+		int[] larger = new int[ Math.max( n - 1, 0 ) ];
+		int[] smaller = new int[ Math.max( n - 1, 0 ) ];
+		int steps = 0;
+		int heapSize = n;
+
+		while( heapSize > 1 )
+		{
+			int large = heap[ 0 ];
+			heap[ 0 ] = heap[ --heapSize ];
+			siftDown( heap, heapSize, 0, key );
+
+			int small = heap[ 0 ];
+			larger[ steps ] = large;
+			smaller[ steps++ ] = small;
+
+			/* large now stands for the difference of both, and takes small's place */
+			key[ large ] -= key[ small ];
+			heap[ 0 ] = large;
+			siftDown( heap, heapSize, 0, key );
+		}
+
+		/* Undo the steps from last to first.  large's group is settled before small needs it */
+		boolean[] group = new boolean[ n ];
+		for( int s = steps - 1; s >= 0; s-- )
+			group[ smaller[ s ] ] = !group[ larger[ s ] ];
+
+		return toGenome( fitnessCalc, group );
+	}
+
+	/**
+	 * Partitions the input greedily: largest value first, each into the group with the
+	 * smaller sum.
+	 * @param fitnessCalc Holds the input values.
+	 * @return The partition as a genome.
+	 */
+	public static Genome greedy( FitnessCalc fitnessCalc )
+	{
+		int n = fitnessCalc.getSize();
+
+		/* Sort |value| << 31 | index so the indices come out by absolute value.  |value| takes
+		 * 32 bits, 2^31 for Integer.MIN_VALUE, and the index 31, so the key never reaches the sign bit */
+		long[] sorted = new long[ n ];
+		for( int i = 0; i < n; i++ )
+			sorted[ i ] = ( Math.abs( (long)fitnessCalc.getWeight( i ) ) << 31 ) | i;
+		Arrays.sort( sorted );
+
+		boolean[] group = new boolean[ n ];
+		long sum0 = 0;
+		long sum1 = 0;
+
+		for( int s = n - 1; s >= 0; s-- )
+		{
+			int i = (int)( sorted[ s ] & Integer.MAX_VALUE );
+			long value = sorted[ s ] >>> 31;
+
+			if( sum1 < sum0 )
+			{
+				group[ i ] = true;
+				sum1 += value;
+			}
+			else
+				sum0 += value;
+		}
+
+		return toGenome( fitnessCalc, group );
+	}
+
+	/** Builds the genome of group, flipping the gene of every negative value, see the class comment */
+	private static Genome toGenome( FitnessCalc fitnessCalc, boolean[] group )
+	{
+		BitSet genes = new BitSet( group.length );
+		for( int i = 0; i < group.length; i++ )
+		{
+			if( group[ i ] != ( fitnessCalc.getWeight( i ) < 0 ) )
+				genes.set( i );
+		}
+
+		return new Genome( fitnessCalc, genes );
+	}
+
+	/** Restores the max heap order of heap[0..size) below position {@param at}, keyed by key */
+	private static void siftDown( int[] heap, int size, int at, long[] key )
+	{
+		int item = heap[ at ];
+		while( true )
+		{
+			int child = 2 * at + 1;
+			if( child >= size )
+				break;
+			if( child + 1 < size && key[ heap[ child + 1 ] ] > key[ heap[ child ] ] )
+				child++;
+			if( key[ heap[ child ] ] <= key[ item ] )
+				break;
+
+			heap[ at ] = heap[ child ];
+			at = child;
+		}
+		heap[ at ] = item;
+	}
+}
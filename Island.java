@@ -0,0 +1,363 @@
+/*
+ * Bonus Assignment #1 
+ * CSCI 3102 Fall 2014
+ * author Shane McCulley
+ * date October 11, 2014
+ * version 0.1
+ **/
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * One CHC population together with the state that drives it: the Hamming threshold 
+ * delta, the number of cataclysms so far and the number of evolutions without a better 
+ * genome.  evolve() runs one generation of the loop described in FindPartition.  
+ * 
+ * runGA evolves a single island until it is finished.  IslandModel evolves several 
+ * islands on their own threads and moves good genomes between them with migrate.  
+ * 
+ * @author Shane McCulley
+ */
+public class Island 
+{
+	//Instance variables.  These were the local variables of runGA.  
+	Population myPop;
+	int delta;
+	int numRestarts = 0;   		//This increments every cataclysm until numRestarts=MAX_RESTART
+	int evolutions = 0;
+	int generation = 0;         	//Generations evolved so far
+	Genome bestGenome; 	   		//This will be a genome of fitness less than MIN_FITNESS
+	
+	final int initHamming;     	//Delta is reset to this value after every cataclysm
+	final int bestFitness;     	//smallest fitness value possible.  0 if sum is even, 1 if odd.
+	
+	/* Print a line for every forced cataclysm, as runGA always has */
+	boolean announceCataclysms = true;
+	
+	final GARandom rand;       	//Only this island draws from it
+	
+	/* Heuristic partitions put back into the population at the start and after every cataclysm, 
+	 * or null when FindPartition.HEURISTICS is off */
+	Genome[] seeds = null;
+	
+	/* Scratch space of the mating pass, reused every generation so a generation allocates nothing: 
+	 * the shuffled parent indices, the HUX seed and the differing genes of the pair being mated */
+	private int[] pairing = new int[ FindPartition.POP_SIZE ];
+	private final Genome xorSeed;
+	private final int[] positions;
+	
+	/* Told the numbers of every generation, or null when nobody asked for metrics */
+	GAListener listener = null;
+	final GenerationStats stats = new GenerationStats();   //Reused every generation
+	
+	/**
+	 * Creates a random population of POP_SIZE and sets delta to initHamming.  
+	 * @param fitnessCalc Fitness of the input, one gene per input value.  
+	 * @param initHamming Starting value of delta.  
+	 * @param bestFitness Lowest fitness possible, the run ends when it is reached.  
+	 * @param rand Source of every random choice of this island.  
+	 */
+	public Island( FitnessCalc fitnessCalc, int initHamming, int bestFitness, GARandom rand )
+	{
+		this.initHamming = initHamming;
+		this.bestFitness = bestFitness;
+		this.rand = rand;
+		delta = initHamming;
+		xorSeed = new Genome( fitnessCalc, new long[ Genome.wordsFor( fitnessCalc.getSize() ) ], 0 );
+		positions = new int[ fitnessCalc.getSize() ];
+		
+		/* Construct population of POP_SIZE with gene length of the input size */
+		myPop = new Population( FindPartition.POP_SIZE, fitnessCalc, !FindPartition.UNIQUE, rand );
+		
+		/* Start near the best fitness from the heuristic partitions and light mutations of them */
+		if( FindPartition.HEURISTICS )
+		{
+			seeds = new Genome[] { Heuristics.karmarkarKarp( fitnessCalc ), Heuristics.greedy( fitnessCalc ) };
+			reseed();
+		}
+		bestGenome = Genome.copyOf( myPop.getFittest() );  //Make sure bestGenome gets intialized 
+	}
+	
+	/** 
+	 * @return True once we have had MAX_RESTART cataclysms, or MAX_EVOLUTIONS generations 
+	 * without a better genome after reaching MIN_FITNESS, or the best fitness possible.  
+	 */
+	public boolean isFinished()
+	{
+		return !( (numRestarts < FindPartition.MAX_RESTART) && (evolutions < FindPartition.MAX_EVOLUTIONS) );
+	}
+	
+	/** @return The best genome found so far.  This is a copy, so the population can not change it.  */
+	public Genome getBestGenome()
+	{
+		return bestGenome;
+	}
+	
+	/**
+	 * Has listener told the numbers of every generation from now on.  
+	 * @param listener The listener, or null to stop.  
+	 * @param run Number of the run, reported in GenerationStats.run.  
+	 * @param id Number of this island, reported in GenerationStats.island.  
+	 */
+	public void setListener( GAListener listener, int run, int id )
+	{
+		this.listener = listener;
+		stats.run = run;
+		stats.island = id;
+	}
+	
+	/** @return System.nanoTime() if there is a listener to report to, otherwise 0 without reading the clock */
+	private long clock()
+	{
+		return ( listener != null ) ? System.nanoTime() : 0;
+	}
+	
+	/**
+	 * Runs one generation: pair, mate, select, then cataclysm and update bestGenome as needed.  
+	 */
+	public void evolve()
+	{
+		generation++;
+		long pairingStart = clock();
+		long cataclysmNanos = 0;
+		int rejected = 0;
+		
+		/* Children are written into the free half of myPop, after the parents */ 
+		int parentCount = myPop.getSize();
+		
+		/*
+		 * Randomly pair our population and determine Hamming distance.  We use randomIterator 
+		 * and take 2 at a time to simulate random pairing without replacement.  
+		 */
+		if( pairing.length < parentCount )
+			pairing = new int[ parentCount ];
+		FindPartition.randomIteration( pairing, parentCount, rand );
+		long crossoverStart = clock();
+		
+		/* The parallel pass does the same work as the loop below, split across a ForkJoinPool */
+		if( FindPartition.PARALLEL )
+			rejected = MatingTask.mate( myPop, pairing, parentCount / 2, delta, rand );
+		
+		else
+		{
+			for(int i = 0; i + 1 < parentCount; i = i + 2)
+			{
+				/* Get the 2 parents by using pairing as indices to myPop */
+				Genome parent1 = myPop.getGenome( pairing[ i ] );
+				Genome parent2 = myPop.getGenome( pairing[ i + 1 ] );
+			
+				/* if the Hamming distance / 2 is greater than delta, they create children 
+				 * If no children are produced in the entire pass of for loop, we decrease
+				 * delta by 1. (Hamming distance / 2) is the number of genes that would change.
+				 */
+				int hammingDistance = parent1.hammingDistance( parent2 );
+				if( (hammingDistance/2 ) > delta ) 
+				{
+				
+					/*xorSeed has bits set at half of the differences between the two parents */
+					FindPartition.createSeed( parent1, parent2, rand, xorSeed, positions );
+				
+					/*Create 2 children from the parents by swapping half the different genes using xorSeed
+					 * The first parent in the argument is used with xor to produce the child */
+					myPop.addChild( parent1, xorSeed );
+					myPop.addChild( parent2, xorSeed );
+				}
+				else
+					rejected++;
+				
+		
+			}
+		}
+		
+		int children = myPop.getSize() - parentCount;
+		long selectionStart = clock();
+		
+		/* If no children were added after our for loop, decrease delta and continue.  
+		 * Note that numRestarts only increments after cataclysm, not each while loop
+		 */
+		if( myPop.getSize() == parentCount )
+		{
+			delta = delta - 1;
+		}
+		
+		/* If there are children, we take the best FindPartition.POP_SIZE genomes from the union of child+parent */
+		else
+		{
+			/*Sort union, and return best N members of that union */
+			myPop = myPop.bestNGenomes( myPop, FindPartition.POP_SIZE );
+			
+			/* Memetic step: hill climb the best survivors toward the best fitness */
+			if( FindPartition.MEMETIC )
+				myPop.improveBest( FindPartition.LOCAL_SEARCH_TOP, bestFitness, FindPartition.LOCAL_SEARCH_STEPS );
+			
+		}
+		long selectionEnd = clock();
+		
+		/* if delta is 0, we have had no children for many loops.  Initialize cataclysm */
+		if( delta <= 0 )
+		{
+			/*Reinitialize delta, increment numRestarts*/ 
+			delta = initHamming; 
+			numRestarts++;
+			
+			/* Restart new population through mutation */
+			long cataclysmStart = clock();
+			myPop.cataclysmPop( FindPartition.MUTATION_RATE, rand, FindPartition.PARALLEL );
+			reseed();
+			cataclysmNanos += clock() - cataclysmStart;
+			
+		}
+		
+		/* We check here for a better genome in this evolution.  If bestGenome remains supreme, increment evolutions*/
+		if( myPop.isFittest( bestGenome ) )
+		{
+			/* if bestGenome the best candidate for MAX_EVOLUTION generations, we quit the loop */
+			evolutions++;
+		}
+		
+		/* This executes if there is a better genome than bestGenome.  We set bestGenome = fittest and reset evolutions*/
+		else
+		{
+
+			/* Copy it, since the row behind the fittest genome is reused by later children */
+			bestGenome = Genome.copyOf( myPop.getFittest() );
+			
+			/*reset evolutions, since we have a new bestGenome */
+			evolutions = 0;
+		}
+		
+		/* force a cataclysm.  Many data sets did not behave as expected, and never
+		 * decreased delta to create a natural cataclysm.  Here, I introduce an alternative
+		 * means of detecting stagnation and forcing cataclysm.  If we have 500 evolutions
+		 * without a better genome, we will conduct a restart 
+		 * and repeat until MAX_RESTARTS is reached */
+		if( bestGenome.getFitness() > FindPartition.MIN_FITNESS && evolutions == FindPartition.MAX_EVOLUTIONS)
+		{
+			long cataclysmStart = clock();
+			myPop.cataclysmPop( FindPartition.MUTATION_RATE, rand, FindPartition.PARALLEL );
+			reseed();
+			cataclysmNanos += clock() - cataclysmStart;
+			evolutions = 0;
+			numRestarts++;
+			if( announceCataclysms )
+				System.out.println("Please hold.  Cataclysm # " + numRestarts + " in progress");
+		}
+		
+		/* If a genome exhibits lowest possible fitness, end algorithm */
+		if( bestGenome.getFitness() <= bestFitness )
+		{
+			/* Set variables so isFinished ends the run */ 
+			numRestarts = FindPartition.MAX_RESTART;
+			evolutions = FindPartition.MAX_EVOLUTIONS;
+		}
+		
+		if( listener != null )
+		{
+			stats.generation = generation;
+			stats.pairsTested = parentCount / 2;
+			stats.children = children;
+			stats.pairsRejected = rejected;
+			stats.evaluations = myPop.evaluations;
+			stats.delta = delta;
+			stats.restarts = numRestarts;
+			stats.bestFitness = bestGenome.getFitness();
+			stats.meanFitness = myPop.meanFitness();
+			stats.pairingNanos = crossoverStart - pairingStart;
+			stats.crossoverNanos = selectionStart - crossoverStart;
+			stats.selectionNanos = selectionEnd - selectionStart;
+			stats.cataclysmNanos = cataclysmNanos;
+			listener.generationDone( stats );
+		}
+		myPop.evaluations = 0;
+	}
+	
+	/** @return Number of bytes writeState needs */
+	public int stateBytes()
+	{
+		return 4 * Integer.BYTES + 2 * Long.BYTES + Genome.wordsFor( bestGenome.getSize() ) * Long.BYTES 
+			 + myPop.stateBytes();
+	}
+	
+	/**
+	 * Writes everything the next generations depend on: delta, the counters, the state 
+	 * of our generator, bestGenome and the population.  Checkpoint saves it.  
+	 * @param out Buffer with at least stateBytes() bytes remaining.  
+	 */
+	public void writeState( ByteBuffer out )
+	{
+		out.putInt( delta ).putInt( numRestarts ).putInt( evolutions ).putInt( generation );
+		out.putLong( rand.getSeed() ).putLong( rand.getState() );
+		bestGenome.writeGenes( out );
+		myPop.writeState( out );
+	}
+	
+	/**
+	 * Replaces our state with one written by writeState, so the island carries on exactly 
+	 * as the saved island would have.  The heuristic seeds follow from the input and are kept.  
+	 * @param in Buffer positioned at the state.  
+	 * @throws IOException If the state is cut short, damaged, or written for another input 
+	 * size.  Nothing is replaced then.  
+	 */
+	public void readState( ByteBuffer in ) throws IOException
+	{
+		/* Check it all before anything is replaced, so a bad checkpoint leaves a fresh island */
+		int ours = 4 * Integer.BYTES + 2 * Long.BYTES + Genome.wordsFor( bestGenome.getSize() ) * Long.BYTES;
+		if( in.remaining() < ours )
+			throw new IOException( "checkpoint is cut short" );
+		myPop.checkState( in.slice( in.position() + ours, in.remaining() - ours ) );
+		
+		delta = in.getInt();
+		numRestarts = in.getInt();
+		evolutions = in.getInt();
+		generation = in.getInt();
+		rand.restore( in.getLong(), in.getLong() );
+		bestGenome.readGenes( in );
+		myPop.readState( in );
+	}
+	
+	/**
+	 * Adds a known good genome to the seeds, such as a cached partition of the same set, and 
+	 * seeds the population with it now and after every cataclysm, as with the heuristic seeds.  
+	 * @param seed The genome.  It is kept, so the caller must not change it.  
+	 */
+	public void addSeed( Genome seed )
+	{
+		if( seeds == null )
+			seeds = new Genome[] { seed };
+		else
+		{
+			seeds = Arrays.copyOf( seeds, seeds.length + 1 );
+			seeds[ seeds.length - 1 ] = seed;
+		}
+		reseed();
+		
+		if( myPop.getFittest().compareTo( bestGenome ) < 0 )
+			bestGenome = Genome.copyOf( myPop.getFittest() );
+	}
+	
+	/** Puts the heuristic seeds and SEED_COPIES light mutations of them back into myPop, if there are seeds */
+	private void reseed()
+	{
+		if( seeds != null )
+			myPop.seedPopulation( seeds, FindPartition.SEED_COPIES, FindPartition.SEED_PERTURBATION, rand );
+	}
+	
+	/**
+	 * Takes in a genome from another island.  It replaces our worst genome if it is better, 
+	 * and the next evolve will pick it up as bestGenome if it beats ours.  
+	 * @param immigrant Genome to take in.  It is copied, the caller keeps ownership.  
+	 */
+	public void migrate( Genome immigrant )
+	{
+		/* The population stays in fitness order, so the immigrant is moved to its place */
+		myPop.replaceWorst( immigrant );
+	}
+	
+	/** Frees the population if it is off the heap.  Called once the island is done; getBestGenome still works */
+	public void close()
+	{
+		myPop.close();
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * Bonus Assignment #1
+ * CSCI 3102 Fall 2014
+ * author Shane McCulley
+ * date October 11, 2014
+ * version 0.1
+ **/
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Runs several independent CHC islands at once, one per thread.  Each island has its own
+ * population, delta, evolutions counter and cataclysm schedule, exactly as a single runGA.
+ *
+ * Every MIGRATION_INTERVAL generations an island sends a copy of its best genome to the
+ * next island in a ring, and takes in whatever genomes the previous island has sent it.
+ * The mailboxes are ConcurrentLinkedQueues, so sending and receiving never block an island.
+ * Islands that converge in different basins keep the search diverse, and a good genome found
+ * on one island spreads to the others without making any single generation slower.
+ *
+ * The run ends when every island is finished, or as soon as one island finds a genome with
+ * the best fitness possible.
+ *
+ * Each island draws from its own generator split from the run's.  The islands still race
+ * each other for migrants, so unlike a single island a seeded run is not replayed exactly.
+ *
+ * @author Shane McCulley
+ */
+public class IslandModel
+{
+	/* Number of generations an island runs between migrations.  Set with -migrate */
+	static int MIGRATION_INTERVAL = 10;
+
+	/**
+	 * Evolves islandCount islands until they are finished and returns the best genome found.
+	 * @param fitnessCalc Fitness of the input, one gene per input value.
+	 * @param islandCount Number of islands, and of threads.
+	 * @param initHamming Starting value of delta on every island.
+	 * @param bestFitness Lowest fitness possible.
+	 * @param rand Generator of the run, split into one generator per island.
+	 * @param listener Told the numbers of every generation of every island, or null.
+	 * @param runNumber Number of the run, for the listener.
+	 * @param stopped True once the run must stop, checked by every island between generations.
+	 * @param improved Given each island's best genome after every generation it improves.
+	 * @param seed A known good genome every island is seeded with, or null.
+	 * @return The best genome of all islands.
+	 */
+	public static Genome evolveIslands( FitnessCalc fitnessCalc, int islandCount, int initHamming, int bestFitness,
+										GARandom rand, GAListener listener, int runNumber,
+										BooleanSupplier stopped, Consumer<Genome> improved, Genome seed )
+	{
+		ArrayList<Island> islands = new ArrayList<Island>( islandCount );
+		ArrayList<ConcurrentLinkedQueue<Genome>> mailboxes = new ArrayList<ConcurrentLinkedQueue<Genome>>( islandCount );
+		AtomicBoolean solved = new AtomicBoolean( false );
+
+		for( int i = 0; i < islandCount; i++ )
+		{
+			Island island = new Island( fitnessCalc, initHamming, bestFitness, rand.split() );
+			island.announceCataclysms = false;  //islandCount threads printing would drown the output
+			island.setListener( listener, runNumber, i );
+			if( seed != null )
+				island.addSeed( seed );
+			islands.add( island );
+			mailboxes.add( new ConcurrentLinkedQueue<Genome>() );
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool( islandCount );
+		ArrayList<Future<?>> runs = new ArrayList<Future<?>>( islandCount );
+
+		for( int i = 0; i < islandCount; i++ )
+		{
+			Island island = islands.get( i );
+			ConcurrentLinkedQueue<Genome> inbox = mailboxes.get( i );
+			ConcurrentLinkedQueue<Genome> outbox = mailboxes.get( ( i + 1 ) % islandCount );
+
+			runs.add( executor.submit( () -> runIsland( island, inbox, outbox, solved, stopped, improved ) ) );
+		}
+
+		try
+		{
+			for( Future<?> run : runs )
+				run.get();
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			solved.set( true );
+		}
+		catch( ExecutionException e )
+		{
+			System.err.println( "Error on an island: " + e.getCause() );
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+
+		/* The answer is the best of the islands' best genomes */
+		Genome bestGenome = islands.get( 0 ).getBestGenome();
+		for( Island island : islands )
+		{
+			if( island.getBestGenome().compareTo( bestGenome ) < 0 )
+				bestGenome = island.getBestGenome();
+		}
+
+		return bestGenome;
+	}
+
+	/**
+	 * Evolves one island on the calling thread, migrating every MIGRATION_INTERVAL generations.
+	 * @param island The island to evolve.
+	 * @param inbox Genomes sent to this island.
+	 * @param outbox Mailbox of the next island in the ring.
+	 * @param solved Set by whichever island reaches the best fitness, which stops the others.
+	 * @param stopped True once the run must stop.
+	 * @param improved Given our best genome whenever it changes.
+	 */
+	private static void runIsland( Island island, ConcurrentLinkedQueue<Genome> inbox,
+								   ConcurrentLinkedQueue<Genome> outbox, AtomicBoolean solved,
+								   BooleanSupplier stopped, Consumer<Genome> improved )
+	{
+		int generation = 0;
+		Genome published = null;
+
+		try
+		{
+			while( !island.isFinished() && !solved.get() && !stopped.getAsBoolean() )
+			{
+				island.evolve();
+				generation++;
+
+				/* evolve replaces bestGenome with a new copy when it improves */
+				if( island.getBestGenome() != published )
+				{
+					published = island.getBestGenome();
+					improved.accept( published );
+				}
+
+				if( generation % MIGRATION_INTERVAL == 0 )
+				{
+					/* bestGenome is already our own copy, but the receiver needs one it can keep */
+					outbox.offer( Genome.copyOf( island.getBestGenome() ) );
+
+					Genome immigrant;
+					while( ( immigrant = inbox.poll() ) != null )
+						island.migrate( immigrant );
+				}
+			}
+		}
+		finally
+		{
+			/* Our thread is the only one using the island, so it frees it as soon as it is done */
+			island.close();
+		}
+
+		if( island.getBestGenome().getFitness() <= island.bestFitness )
+			solved.set( true );
+	}
+}
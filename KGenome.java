@@ -0,0 +1,446 @@
+/*
+ * Bonus Assignment #1
+ * CSCI 3102 Fall 2014
+ * author Shane McCulley
+ * date October 11, 2014
+ * version 0.1
+ **/
+
+import java.util.Arrays;
+
+/**
+ * Genome for splitting the input into K groups instead of 2.  Each gene holds the group
+ * of one input value as a small id packed into long words: 1, 2, 4 or 8 bits per id,
+ * whichever is the smallest that fits K, so a word holds 64, 32, 16 or 8 genes and
+ * finding a gene is a shift and a mask.  K may be anywhere from 2 to 256.
+ *
+ * Every genome keeps the K sums of its groups, and the largest and smallest of them with
+ * the number of groups at each.  Moving one value to another group changes two sums, so
+ * both the move and the fitness it would give, moveFitness, take constant time without
+ * touching the other n - 1 genes or K - 2 sums.  Only a move that takes the last group off
+ * the largest or smallest sum looks at every sum, to find the next one.  HUX and mutation
+ * move many values at once, so they update the sums per move and find the extremes once.
+ * Fitness is the difference between the largest and the smallest group sum; with K = 2
+ * that is the same fitness FitnessCalc gives a Genome.
+ *
+ * @author Shane McCulley
+ */
+public class KGenome implements Comparable<KGenome>
+{
+	//Instance variables
+	private final FitnessCalc fitnessCalc;  //Only its weights are used, the fitness is ours
+	private final int groups;
+	private final int bitsPerGene;        //1, 2, 4 or 8
+	private final int genesPerWord;       //64 / bitsPerGene
+	private final int geneShift;          //log2( genesPerWord )
+	private final long geneMask;          //bitsPerGene low bits set
+	private final long[] genes;
+
+	private final long[] groupSums;
+	private int fitness;
+
+	/* Largest and smallest of groupSums, and how many groups have each */
+	private long maxSum;
+	private int maxCount;
+	private long minSum;
+	private int minCount;
+
+	/**
+	 * Constructor creates a genome that puts each value in a random group.
+	 * @param fitnessCalc Holds the input values, one gene per value.
+	 * @param groups Number of groups K, 2 to 256.
+	 * @param rand Source of the random groups.
+	 */
+	public KGenome( FitnessCalc fitnessCalc, int groups, GARandom rand )
+	{
+		this( fitnessCalc, groups );
+
+		for( int i = 0; i < fitnessCalc.getSize(); i++ )
+			setGene( i, rand.nextInt( groups ) );
+
+		resum();
+	}
+
+	/** Constructor creates a genome with every value in group 0, used for copies */
+	private KGenome( FitnessCalc fitnessCalc, int groups )
+	{
+		if( groups < 2 || groups > 256 )
+			throw new IllegalArgumentException( "Number of groups must be between 2 and 256: " + groups );
+
+		this.fitnessCalc = fitnessCalc;
+		this.groups = groups;
+
+		/* Smallest power of two number of bits that holds an id of groups - 1 */
+		int bits = 1;
+		while( ( 1 << bits ) < groups )
+			bits <<= 1;
+
+		bitsPerGene = bits;
+		genesPerWord = 64 / bits;
+		geneShift = Integer.numberOfTrailingZeros( genesPerWord );
+		geneMask = ( 1L << bits ) - 1;
+		genes = new long[ ( fitnessCalc.getSize() + genesPerWord - 1 ) / genesPerWord ];
+		groupSums = new long[ groups ];
+		findExtremes();
+	}
+
+	/** @return A new genome with the same genes, sums and fitness as copyGenome */
+	public static KGenome copyOf( KGenome copyGenome )
+	{
+		KGenome copy = new KGenome( copyGenome.fitnessCalc, copyGenome.groups );
+		copy.copyFrom( copyGenome );
+
+		return copy;
+	}
+
+	/** Overwrites our genes, sums and fitness with those of source {@param source A genome of the same input and K} */
+	public void copyFrom( KGenome source )
+	{
+		System.arraycopy( source.genes, 0, genes, 0, genes.length );
+		System.arraycopy( source.groupSums, 0, groupSums, 0, groups );
+		fitness = source.fitness;
+		maxSum = source.maxSum;
+		maxCount = source.maxCount;
+		minSum = source.minSum;
+		minCount = source.minCount;
+	}
+
+	/** @return The group of the value at {@param index} */
+	public int getGene( int index )
+	{
+		int shift = ( index & ( genesPerWord - 1 ) ) * bitsPerGene;
+		return (int)( ( genes[ index >>> geneShift ] >>> shift ) & geneMask );
+	}
+
+	/** Writes the group id without touching the sums */
+	private void setGene( int index, int group )
+	{
+		int word = index >>> geneShift;
+		int shift = ( index & ( genesPerWord - 1 ) ) * bitsPerGene;
+		genes[ word ] = ( genes[ word ] & ~( geneMask << shift ) ) | ( (long)group << shift );
+	}
+
+	/** Recomputes every group sum and the fitness from scratch */
+	private void resum()
+	{
+		Arrays.fill( groupSums, 0 );
+		for( int i = 0; i < fitnessCalc.getSize(); i++ )
+			groupSums[ getGene( i ) ] += fitnessCalc.getWeight( i );
+
+		findExtremes();
+	}
+
+	/** Finds the largest and smallest sums and their counts by looking at every sum, then sets the fitness */
+	private void findExtremes()
+	{
+		maxSum = Long.MIN_VALUE;
+		minSum = Long.MAX_VALUE;
+		for( long sum : groupSums )
+		{
+			if( sum > maxSum )
+			{
+				maxSum = sum;
+				maxCount = 0;
+			}
+			if( sum == maxSum )
+				maxCount++;
+			if( sum < minSum )
+			{
+				minSum = sum;
+				minCount = 0;
+			}
+			if( sum == minSum )
+				minCount++;
+		}
+		fitness = spread( maxSum, minSum );
+	}
+
+	/**
+	 * Fitness this genome would have if the value at index moved to group.  Nothing is
+	 * changed.  Only two sums differ, so unless they were the only groups at the largest
+	 * or smallest sum this is the old extremes compared with the two new sums.
+	 * @param index The gene to move.
+	 * @param group The group it would move to.
+	 * @return Fitness after the move.
+	 */
+	public int moveFitness( int index, int group )
+	{
+		int from = getGene( index );
+		if( from == group )
+			return fitness;
+
+		int weight = fitnessCalc.getWeight( index );
+		long fromSum = groupSums[ from ] - weight;
+		long toSum = groupSums[ group ] + weight;
+
+		if( !extremesKept( from, group ) )
+		{
+			/* Every other sum is looked at, with the two new ones in place of the old */
+			long max = Math.max( fromSum, toSum );
+			long min = Math.min( fromSum, toSum );
+			for( int g = 0; g < groups; g++ )
+			{
+				if( g != from && g != group )
+				{
+					max = Math.max( max, groupSums[ g ] );
+					min = Math.min( min, groupSums[ g ] );
+				}
+			}
+			return spread( max, min );
+		}
+
+		return spread( Math.max( maxSum, Math.max( fromSum, toSum ) ), Math.min( minSum, Math.min( fromSum, toSum ) ) );
+	}
+
+	/** @return True if some group besides {@param a} and {@param b} is at the largest sum, and some at the smallest */
+	private boolean extremesKept( int a, int b )
+	{
+		int atMax = ( groupSums[ a ] == maxSum ? 1 : 0 ) + ( groupSums[ b ] == maxSum ? 1 : 0 );
+		int atMin = ( groupSums[ a ] == minSum ? 1 : 0 ) + ( groupSums[ b ] == minSum ? 1 : 0 );
+
+		return atMax < maxCount && atMin < minCount;
+	}
+
+	/**
+	 * Moves the value at index to another group, updating two sums, the extremes and the 
+	 * fitness in constant time unless the move takes the last group off an extreme.  
+	 * @param index The gene to move.
+	 * @param group The group it moves to.
+	 */
+	public void moveGene( int index, int group )
+	{
+		int from = getGene( index );
+		if( from == group )
+			return;
+
+		boolean kept = extremesKept( from, group );
+		if( kept )
+		{
+			/* Take the two groups off the extremes, then put them back with their new sums */
+			leave( groupSums[ from ] );
+			leave( groupSums[ group ] );
+		}
+
+		shiftGene( index, group );
+
+		if( kept )
+		{
+			join( groupSums[ from ] );
+			join( groupSums[ group ] );
+			fitness = spread( maxSum, minSum );
+		}
+		else
+			findExtremes();
+	}
+
+	/** Moves the value at index to group and updates the two sums only.  Batches of moves find the extremes once at the end */
+	private void shiftGene( int index, int group )
+	{
+		int from = getGene( index );
+		if( from == group )
+			return;
+
+		int weight = fitnessCalc.getWeight( index );
+		groupSums[ from ] -= weight;
+		groupSums[ group ] += weight;
+		setGene( index, group );
+	}
+
+	/** Stops counting a group whose sum was {@param sum} at the extremes.  Some other group stays at each */
+	private void leave( long sum )
+	{
+		if( sum == maxSum )
+			maxCount--;
+		if( sum == minSum )
+			minCount--;
+	}
+
+	/** Counts a group whose sum is now {@param sum} at the extremes, or makes it the new extreme */
+	private void join( long sum )
+	{
+		if( sum > maxSum )
+		{
+			maxSum = sum;
+			maxCount = 0;
+		}
+		if( sum == maxSum )
+			maxCount++;
+		if( sum < minSum )
+		{
+			minSum = sum;
+			minCount = 0;
+		}
+		if( sum == minSum )
+			minCount++;
+	}
+
+	/**
+	 * The K-way form of swapGenes: moves each value listed in positions to the group donor
+	 * puts it in.  Only the moved values are re-summed, and the extremes found once at the end.
+	 * @param donor Genome whose groups are taken.
+	 * @param positions Indices of the values to move.
+	 * @param count Number of indices in positions to use.
+	 */
+	public void takeGenes( KGenome donor, int[] positions, int count )
+	{
+		for( int i = 0; i < count; i++ )
+			shiftGene( positions[ i ], donor.getGene( positions[ i ] ) );
+
+		findExtremes();
+	}
+
+	/** 
+	 * Largest minus smallest sum.  Sums of large values can differ by more than an int 
+	 * holds, so the spread is capped at Integer.MAX_VALUE as in FitnessCalc.getFitness.  
+	 * @param max The largest group sum.  
+	 * @param min The smallest group sum.  
+	 * @return The spread, from 0 to Integer.MAX_VALUE.  
+	 */
+	private static int spread( long max, long min )
+	{
+		return (int)Math.min( max - min, Integer.MAX_VALUE );
+	}
+
+	/** @return Fitness value greater than or equal to 0, the largest minus smallest group sum */
+	public int getFitness()
+	{
+		return fitness;
+	}
+
+	/** @return The sum of the values in {@param group} */
+	public long getGroupSum( int group )
+	{
+		return groupSums[ group ];
+	}
+
+	/** @return Number of groups K */
+	public int getGroups()
+	{
+		return groups;
+	}
+
+	/** @return The number of genes, one per input value */
+	public int getSize()
+	{
+		return fitnessCalc.getSize();
+	}
+
+	/**
+	 * Marks the genes that differ from chromo: after the call, the low bit of each gene's
+	 * field in the returned word is set where the group ids differ, and every other bit is 0.
+	 * @param word Index of the word to compare.
+	 * @param chromo The genome to compare with.
+	 * @return One bit per differing gene, at the low bit of its field.
+	 */
+	private long differingGenes( int word, KGenome chromo )
+	{
+		/* Fold each field's bits down to its low bit, then keep only the low bits */
+		long x = genes[ word ] ^ chromo.genes[ word ];
+		for( int shift = 1; shift < bitsPerGene; shift <<= 1 )
+			x |= x >>> shift;
+
+		return x & lowBits();
+	}
+
+	/** @return A word with the low bit of every field set */
+	private long lowBits()
+	{
+		switch( bitsPerGene )
+		{
+			case 1: return -1L;
+			case 2: return 0x5555555555555555L;
+			case 4: return 0x1111111111111111L;
+			default: return 0x0101010101010101L;
+		}
+	}
+
+	/**
+	 * Number of values the two genomes put in different groups, counted a word at a time.
+	 * @param chromo The genome to compare with.
+	 * @return Hamming distance between the genomes.
+	 */
+	public int hammingDistance( KGenome chromo )
+	{
+		int distance = 0;
+		for( int w = 0; w < genes.length; w++ )
+			distance += Long.bitCount( differingGenes( w, chromo ) );
+
+		return distance;
+	}
+
+	/**
+	 * Writes the indices of the genes that differ from chromo into positions.
+	 * @param chromo The genome to compare with.
+	 * @param positions Array with room for every gene.
+	 * @return Number of indices written.
+	 */
+	public int differingPositions( KGenome chromo, int[] positions )
+	{
+		int count = 0;
+		for( int w = 0; w < genes.length; w++ )
+		{
+			long diff = differingGenes( w, chromo );
+			while( diff != 0 )
+			{
+				int bit = Long.numberOfTrailingZeros( diff );
+				positions[ count++ ] = ( w << geneShift ) + bit / bitsPerGene;
+				diff &= diff - 1;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Writes a mutation of this genome into mutant: each value moves to a random other
+	 * group with probability mutationRate.  Which values move is drawn 64 at a time with
+	 * nextMask, so only the moved values cost a draw.  Sums are updated per move, the
+	 * extremes and fitness once.
+	 * @param mutant A genome of the same input and K whose genes are overwritten.
+	 * @param mutationRate Chance that any one value moves.
+	 * @param rand Source of the random choices.
+	 */
+	public void mutateInto( KGenome mutant, double mutationRate, GARandom rand )
+	{
+		mutant.copyFrom( this );
+
+		for( int block = 0; block < getSize(); block += 64 )
+		{
+			for( long moves = rand.nextMask( mutationRate ); moves != 0; moves &= moves - 1 )
+			{
+				int i = block + Long.numberOfTrailingZeros( moves );
+				if( i >= getSize() )
+					break;
+
+				/* Any group but the current one */
+				int group = rand.nextInt( groups - 1 );
+				if( group >= mutant.getGene( i ) )
+					group++;
+
+				mutant.shiftGene( i, group );
+			}
+		}
+
+		mutant.findExtremes();
+	}
+
+	/** Compares genomes by fitness, lower is better */
+	public int compareTo( KGenome chromo )
+	{
+		return Integer.compare( this.fitness, chromo.fitness );
+	}
+
+	/** Two KGenomes are equal if they put every value in the same group */
+	public boolean equals( Object obj )
+	{
+		if( !( obj instanceof KGenome ) )
+			return false;
+
+		return Arrays.equals( genes, ( (KGenome)obj ).genes );
+	}
+
+	/** @return Hash of the packed genes, consistent with equals */
+	public int hashCode()
+	{
+		return Arrays.hashCode( genes );
+	}
+}
@@ -0,0 +1,285 @@
+/*
+ * Bonus Assignment #1
+ * CSCI 3102 Fall 2014
+ * author Shane McCulley
+ * date October 11, 2014
+ * version 0.1
+ **/
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Splits a set into K groups so the largest and smallest group sums are as close as
+ * possible.  It runs the same CHC loop as FindPartition and Island with the same
+ * constants, on KGenomes instead of Genomes:
+ *
+ * HUX finds every value the parents put in different groups, picks exactly half of them
+ * at random, and each child takes the other parent's group for those values.  A cataclysm
+ * keeps the best genome and fills the rest of the population with mutations of it, where
+ * a mutated value moves to a random other group.  Both only re-sum the values they move.
+ *
+ * The population is 2 * POP_SIZE genomes made once.  Parents are the first size of them,
+ * children are copied into the genomes after the parents, and selection sorts the union
+ * and keeps the first POP_SIZE.  So a run allocates no genomes after it starts.
+ *
+ * Like FindPartition, a run stops between generations once its time budget is spent or
+ * stop is set, and solveAsync runs it in the background.  It is plain CHC only: -exact,
+ * -heuristics, -memetic, -unique, -parallel, -islands, -metrics, -checkpoint, -cache and
+ * -offheap do not apply to it.
+ *
+ * @author Shane McCulley
+ */
+public class KPartition
+{
+	//Instance variables
+	final int[] inputData;
+	final int groups;
+	final FitnessCalc fitnessCalc;    //Only used for its weights
+	final int bestFitness;            //0 if the sum divides into K equal groups, otherwise 1
+	final int initHamming;            //Delta is reset to this value after every cataclysm
+	long begin;                       //Used to time the algorithm
+	long end;
+	volatile KGenome bestGenome;      //Replaced, never changed, so other threads may read it
+	boolean announceCataclysms = true;
+
+	/* Anytime solving, as in FindPartition */
+	long timeBudget = FindPartition.TIME_BUDGET;    //ms, 0 for none
+	private long deadline;            //System.nanoTime() when the budget is spent
+	final AtomicBoolean stop = new AtomicBoolean( false );
+	Consumer<KGenome> improved = null;
+
+	//CHC state, as in Island
+	private final KGenome[] members;  //Parents first, then children
+	private int size;
+	private int delta;
+	private int numRestarts = 0;
+	private int evolutions = 0;
+
+	private final int[] pairing;      //Shuffled parent indices, reused every generation
+	private final int[] positions;    //Differing genes of the pair being mated
+	private final GARandom rand = FindPartition.FIXED_SEED ? new GARandom( FindPartition.SEED ) : new GARandom();
+
+	/**
+	 * Sets up a run of CHC on one input set.  Nothing is evolved until solve is called.
+	 * @param inputData The set to partition.
+	 * @param groups Number of groups K, 2 to 256.
+	 */
+	public KPartition( int[] inputData, int groups )
+	{
+		this.inputData = inputData;
+		this.groups = groups;
+		fitnessCalc = new FitnessCalc( inputData );
+		initHamming = inputData.length / 4;
+		bestFitness = ( Math.floorMod( FindPartition.sumList( inputData ), (long)groups ) == 0 ) ? 0 : 1;
+
+		members = new KGenome[ 2 * FindPartition.POP_SIZE ];
+		for( int i = 0; i < members.length; i++ )
+			members[ i ] = new KGenome( fitnessCalc, groups, rand );
+
+		size = FindPartition.POP_SIZE;
+		pairing = new int[ members.length ];
+		positions = new int[ inputData.length ];
+	}
+
+	/** Solves one set into groups and prints the result */
+	public static void runGA( int[] inputData, int groups )
+	{
+		KPartition run = new KPartition( inputData, groups );
+		run.solve();
+		run.printReport( System.out );
+	}
+
+	/**
+	 * Runs CHC until we find a solution, we have MAX_RESTART cataclysms, the time budget is
+	 * spent or stop is set.
+	 * @return The best genome found.
+	 */
+	public KGenome solve()
+	{
+		begin = System.currentTimeMillis();
+		deadline = System.nanoTime() + timeBudget * 1000000L;
+
+		delta = initHamming;
+		Arrays.sort( members, 0, size );
+		improve( KGenome.copyOf( members[ 0 ] ) );
+
+		while( numRestarts < FindPartition.MAX_RESTART && evolutions < FindPartition.MAX_EVOLUTIONS && !isStopped() )
+			evolve();
+
+		end = System.currentTimeMillis();
+		return bestGenome;
+	}
+
+	/**
+	 * Solves on executor, stopping after budget ms, as FindPartition.solveAsync does.
+	 * Cancelling the future stops the run at the end of its current generation.
+	 * @param budget Wall clock budget in ms, 0 for none.
+	 * @param improved Given every better genome as it is found, on the solving thread, or null.
+	 * @param executor Runs the solve.
+	 * @return The future best genome.
+	 */
+	public CompletableFuture<KGenome> solveAsync( long budget, Consumer<KGenome> improved, Executor executor )
+	{
+		this.timeBudget = budget;
+		this.improved = improved;
+
+		CompletableFuture<KGenome> result = new CompletableFuture<KGenome>();
+		result.whenComplete( ( genome, error ) -> stop.set( true ) );  //only matters if cancelled
+
+		executor.execute( () -> {
+			try
+			{
+				result.complete( solve() );
+			}
+			catch( Throwable e )
+			{
+				result.completeExceptionally( e );
+			}
+		} );
+		return result;
+	}
+
+	/** Same as {@link #solveAsync(long, Consumer, Executor)} on a new thread @param budget ms @param improved or null */
+	public CompletableFuture<KGenome> solveAsync( long budget, Consumer<KGenome> improved )
+	{
+		return solveAsync( budget, improved, task -> new Thread( task, "k partition run" ).start() );
+	}
+
+	/** @return True once stop is set or the time budget is spent.  Checked between generations */
+	boolean isStopped()
+	{
+		return stop.get() || ( timeBudget > 0 && System.nanoTime() - deadline >= 0 );
+	}
+
+	/** @return The best genome found so far, or null before solve starts */
+	public KGenome getBestSoFar()
+	{
+		return bestGenome;
+	}
+
+	/** Makes chromo bestGenome and hands it to improved {@param chromo A new copy nobody else changes} */
+	private void improve( KGenome chromo )
+	{
+		bestGenome = chromo;
+		if( improved != null )
+			improved.accept( chromo );
+	}
+
+	/** Runs one generation: pair, mate, select, then cataclysm and update bestGenome as needed */
+	private void evolve()
+	{
+		int parentCount = size;
+		FindPartition.randomIteration( pairing, parentCount, rand );
+
+		for( int i = 0; i + 1 < parentCount; i = i + 2 )
+		{
+			KGenome parent1 = members[ pairing[ i ] ];
+			KGenome parent2 = members[ pairing[ i + 1 ] ];
+
+			if( ( parent1.hammingDistance( parent2 ) / 2 ) > delta )
+				crossover( parent1, parent2 );
+		}
+
+		/* No children, so lower the bar.  Otherwise keep the best POP_SIZE of parents and children */
+		if( size == parentCount )
+			delta = delta - 1;
+		else
+		{
+			Arrays.sort( members, 0, size );
+			size = FindPartition.POP_SIZE;
+		}
+
+		if( delta <= 0 )
+		{
+			delta = initHamming;
+			numRestarts++;
+			cataclysm();
+		}
+
+		Arrays.sort( members, 0, size );
+		if( members[ 0 ].compareTo( bestGenome ) >= 0 )
+			evolutions++;
+		else
+		{
+			improve( KGenome.copyOf( members[ 0 ] ) );
+			evolutions = 0;
+		}
+
+		/* Forced cataclysm on stagnation, as in Island */
+		if( bestGenome.getFitness() > FindPartition.MIN_FITNESS && evolutions == FindPartition.MAX_EVOLUTIONS )
+		{
+			cataclysm();
+			evolutions = 0;
+			numRestarts++;
+			if( announceCataclysms )
+				System.out.println( "Please hold.  Cataclysm # " + numRestarts + " in progress" );
+		}
+
+		if( bestGenome.getFitness() <= bestFitness )
+		{
+			numRestarts = FindPartition.MAX_RESTART;
+			evolutions = FindPartition.MAX_EVOLUTIONS;
+		}
+	}
+
+	/**
+	 * HUX for K groups: each child starts as a copy of one parent and takes the other
+	 * parent's group for a random half of the values where the parents differ.
+	 * The children are written into the two genomes after the live ones.
+	 */
+	private void crossover( KGenome parent1, KGenome parent2 )
+	{
+		int differing = parent1.differingPositions( parent2, positions );
+		int half = differing / 2;
+
+		/* Partial Fisher-Yates: the first half entries become a random half of them */
+		for( int i = 0; i < half; i++ )
+		{
+			int j = i + rand.nextInt( differing - i );
+			int swap = positions[ i ];
+			positions[ i ] = positions[ j ];
+			positions[ j ] = swap;
+		}
+
+		KGenome child1 = members[ size++ ];
+		KGenome child2 = members[ size++ ];
+
+		child1.copyFrom( parent1 );
+		child1.takeGenes( parent2, positions, half );
+		child2.copyFrom( parent2 );
+		child2.takeGenes( parent1, positions, half );
+	}
+
+	/** Keeps the best genome and replaces every other one with a mutation of it */
+	private void cataclysm()
+	{
+		Arrays.sort( members, 0, size );
+		for( int i = 1; i < size; i++ )
+			members[ 0 ].mutateInto( members[ i ], FindPartition.MUTATION_RATE, rand );
+	}
+
+	/** Prints the time taken and the groups of the best genome {@param out Where to print} */
+	public void printReport( PrintStream out )
+	{
+		out.println( "\nTotal time elapsed: " + ( end - begin ) + " ms, seed " + rand.getSeed() );
+		out.println( "For input data: " + Arrays.toString( inputData ) );
+		out.println( "Best solution found into " + groups + " groups has a fitness of " + bestGenome.getFitness() );
+
+		for( int g = 0; g < groups; g++ )
+		{
+			ArrayList<Integer> group = new ArrayList<Integer>();
+			for( int i = 0; i < inputData.length; i++ )
+			{
+				if( bestGenome.getGene( i ) == g )
+					group.add( inputData[ i ] );
+			}
+			out.printf( "Group %d, Sum = %d: %s\n", g + 1, bestGenome.getGroupSum( g ), group );
+		}
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Bonus Assignment #1
+ * CSCI 3102 Fall 2014
+ * author Shane McCulley
+ * date October 11, 2014
+ * version 0.1
+ **/
+
+import java.nio.IntBuffer;
+
+/**
+ * Hill climbing on one genome, run on the best few survivors of each generation when
+ * memetic mode is on.  CHC is good at finding the right region but often stalls a few units
+ * above the best fitness; moving one or two values between groups finishes the job cheaply.
+ *
+ * Let D be the sum of group 0 minus the sum of group 1.  Moving a value w from group 0 to
+ * group 1 makes D - 2w, and from group 1 to group 0 makes D + 2w, so the best single move is
+ * the value of group 0 closest to D / 2 or the value of group 1 closest to -D / 2.  Swapping
+ * a value wi of group 0 with a value wj of group 1 makes D - 2( wi - wj ), so for each wi the
+ * best partner is the value of group 1 closest to wi - D / 2.  FitnessCalc keeps the values
+ * sorted, so each of these is a binary search.  The genome's sums are kept by flipGene, so a
+ * move is never re-summed.
+ *
+ * Each step takes the best single move if it helps, otherwise the first swap that helps.
+ * It stops when no move helps, the target fitness is reached or after maxSteps steps.
+ *
+ * A swap step tries at most SWAP_CANDIDATES values of group 0, starting from the values
+ * nearest D / 2 and wrapping around, so it costs O( SWAP_CANDIDATES log n ) rather than
+ * O( n log n ) on a genome no swap can improve.  A group 0 of at most that many is scanned in full.
+ *
+ * @author Shane McCulley
+ */
+public class LocalSearch
+{
+	/* Most values of group 0 a swap step finds a partner for.  Near the best fitness a helping 
+	 * swap is rare, and 300000 values of up to 10^9 needed about a thousand tries */
+	final static int SWAP_CANDIDATES = 4096;
+
+	/**
+	 * Improves chromo in place by single moves and swaps.
+	 * @param chromo The genome to improve.
+	 * @param targetFitness Stop once the fitness is at or below this, such as the best possible.
+	 * @param maxSteps Largest number of moves or swaps to make.
+	 * @return The number of partitions whose fitness was computed, each single move and swap 
+	 * tried.  chromo was changed if its fitness went down.  
+	 */
+	public static int improve( Genome chromo, int targetFitness, int maxSteps )
+	{
+		FitnessCalc fitnessCalc = chromo.getFitnessCalc();
+		IntBuffer order = fitnessCalc.getWeightOrder();
+		int evaluations = 0;
+
+		for( int step = 0; step < maxSteps && chromo.getFitness() > targetFitness; step++ )
+		{
+			long difference = chromo.sumDifference();
+
+			/* Best single move: the value of group 0 nearest D / 2, or of group 1 nearest -D / 2 */
+			int from0 = nearest( chromo, order, difference / 2, 0 );
+			int from1 = nearest( chromo, order, -difference / 2, 1 );
+			long after0 = ( from0 < 0 ) ? Long.MAX_VALUE : Math.abs( difference - 2L * fitnessCalc.getWeight( from0 ) );
+			long after1 = ( from1 < 0 ) ? Long.MAX_VALUE : Math.abs( difference + 2L * fitnessCalc.getWeight( from1 ) );
+			evaluations += ( from0 < 0 ? 0 : 1 ) + ( from1 < 0 ? 0 : 1 );
+
+			if( Math.min( after0, after1 ) < Math.abs( difference ) )
+			{
+				chromo.flipGene( ( after0 <= after1 ) ? from0 : from1 );
+				continue;
+			}
+
+			/* First swap that helps: for each value of group 0 in the window, its best partner in group 1 */
+			boolean swapped = false;
+			int size = order.limit();
+			int start = lowerBound( fitnessCalc, order, difference / 2 );
+			int tried = 0;
+			for( int k = 0; k < size && tried < SWAP_CANDIDATES && !swapped; k++ )
+			{
+				int i = order.get( ( start + k ) % size );
+				if( chromo.getGene( i ) != 0 )
+					continue;
+				tried++;
+
+				long weightI = fitnessCalc.getWeight( i );
+				int j = nearest( chromo, order, weightI - difference / 2, 1 );
+				if( j >= 0 )
+					evaluations++;
+				if( j >= 0 && Math.abs( difference - 2 * ( weightI - fitnessCalc.getWeight( j ) ) ) < Math.abs( difference ) )
+				{
+					chromo.flipGene( i );
+					chromo.flipGene( j );
+					swapped = true;
+				}
+			}
+
+			if( !swapped )
+				break;
+		}
+
+		return evaluations;
+	}
+
+	/**
+	 * Finds the value nearest target among the genes of one group.
+	 * @param chromo The genome deciding the groups.
+	 * @param order Indices of the values in increasing order.
+	 * @param target The value we want.
+	 * @param group The gene value, 0 or 1, the result must have.
+	 * @return Index of the nearest value in group, or -1 if the group is empty.
+	 */
+	private static int nearest( Genome chromo, IntBuffer order, long target, int group )
+	{
+		FitnessCalc fitnessCalc = chromo.getFitnessCalc();
+		int low = lowerBound( fitnessCalc, order, target );
+
+		/* Walk outwards from there, always taking the closer side, until one is in group */
+		int below = low - 1;
+		int above = low;
+		while( below >= 0 || above < order.limit() )
+		{
+			boolean takeAbove = below < 0 || ( above < order.limit()
+					&& fitnessCalc.getWeight( order.get( above ) ) - target <= target - fitnessCalc.getWeight( order.get( below ) ) );
+
+			int index = takeAbove ? order.get( above++ ) : order.get( below-- );
+			if( chromo.getGene( index ) == group )
+				return index;
+		}
+		return -1;
+	}
+
+	/** @return First position of order whose value is at least target, or order.limit() if there is none */
+	private static int lowerBound( FitnessCalc fitnessCalc, IntBuffer order, long target )
+	{
+		int low = 0;
+		int high = order.limit();
+		while( low < high )
+		{
+			int middle = ( low + high ) >>> 1;
+			if( fitnessCalc.getWeight( order.get( middle ) ) < target )
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * Bonus Assignment #1
+ * CSCI 3102 Fall 2014
+ * author Shane McCulley
+ * date October 11, 2014
+ * version 0.1
+ **/
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs the mating pass of one CHC generation on a ForkJoinPool.  Every pair from
+ * randomIteration is independent of the others: the Hamming check, createSeed and
+ * both children only read the two parents.  The pairs are split in halves until a
+ * task has at most PAIRS_PER_TASK of them, and each task runs its pairs on its own thread.
+ *
+ * Pair p owns child slots 2p and 2p + 1 of the population, so each task writes its
+ * children into its own range of free rows and no two threads share a row.  Each task
+ * draws from its own generator, split from its parent task's before either runs, so the
+ * children only depend on the island's generator and not on which thread ran what.
+ * Once every task is done, keepChildren moves the
+ * filled slots into the population in pair order, the same order the sequential loop in
+ * runGA adds them.
+ *
+ * @author Shane McCulley
+ */
+public class MatingTask extends RecursiveAction
+{
+	private static final long serialVersionUID = 1L;
+
+	/* Below this many pairs a task stops splitting and does the work itself */
+	final static int PAIRS_PER_TASK = 4;
+
+	//Instance variables shared by every task of one pass
+	private final Population pop;
+	private final int[] pairing;
+	private final int delta;
+	private final boolean[] filled;
+	private final GARandom rand;              //Only this task draws from it
+
+	//The pairs this task is responsible for, [firstPair, lastPair)
+	private final int firstPair;
+	private final int lastPair;
+
+	private MatingTask( Population pop, int[] pairing, int delta,
+						boolean[] filled, GARandom rand, int firstPair, int lastPair )
+	{
+		this.rand = rand;
+		this.pop = pop;
+		this.pairing = pairing;
+		this.delta = delta;
+		this.filled = filled;
+		this.firstPair = firstPair;
+		this.lastPair = lastPair;
+	}
+
+	/**
+	 * Mates every pair of pop in parallel and adds the children to pop.
+	 * @param pop The population, its live genomes are the parents.
+	 * @param pairing Shuffled parent indices, taken 2 at a time.
+	 * @param pairs Number of pairs to mate from the front of pairing.
+	 * @param delta Parents reproduce if (Hamming distance / 2) is greater than delta.
+	 * @param rand Generator the tasks' generators are split from.
+	 * @return The number of pairs whose Hamming distance / 2 was not above delta.
+	 */
+	public static int mate( Population pop, int[] pairing, int pairs, int delta, GARandom rand )
+	{
+		boolean[] filled = new boolean[ 2 * pairs ];
+
+		pop.reserveChildren( 2 * pairs );
+		ForkJoinPool.commonPool().invoke( new MatingTask( pop, pairing, delta, filled, rand.split(), 0, pairs ) );
+		pop.keepChildren( filled, 2 * pairs );
+
+		/* A pair that passed filled both its slots, whether or not keepChildren kept them */
+		int rejected = 0;
+		for( int p = 0; p < pairs; p++ )
+			if( !filled[ 2 * p ] )
+				rejected++;
+
+		return rejected;
+	}
+
+	/** Splits the pairs in half until there are few enough to mate here */
+	protected void compute()
+	{
+		if( lastPair - firstPair <= PAIRS_PER_TASK )
+		{
+			matePairs();
+		}
+		else
+		{
+			int middle = ( firstPair + lastPair ) >>> 1;
+			invokeAll( new MatingTask( pop, pairing, delta, filled, rand.split(), firstPair, middle ),
+					   new MatingTask( pop, pairing, delta, filled, rand.split(), middle, lastPair ) );
+		}
+	}
+
+	/** Same steps as the loop in FindPartition.runGA, writing children into our slots */
+	private void matePairs()
+	{
+		/* Scratch for our pairs' seeds, made once per task since tasks run on any thread */
+		Genome xorSeed = null;
+		int[] positions = null;
+		
+		for( int p = firstPair; p < lastPair; p++ )
+		{
+			Genome parent1 = pop.getGenome( pairing[ 2 * p ] );
+			Genome parent2 = pop.getGenome( pairing[ 2 * p + 1 ] );
+
+			int hammingDistance = parent1.hammingDistance( parent2 );
+			if( (hammingDistance/2 ) > delta )
+			{
+				if( xorSeed == null )
+				{
+					xorSeed = new Genome( parent1.getFitnessCalc(), new long[ Genome.wordsFor( parent1.getSize() ) ], 0 );
+					positions = new int[ parent1.getSize() ];
+				}
+				FindPartition.createSeed( parent1, parent2, rand, xorSeed, positions );
+
+				/* Copy each parent with its sums into its slot, then swap the seed's genes */
+				fillSlot( 2 * p, parent1, xorSeed );
+				fillSlot( 2 * p + 1, parent2, xorSeed );
+			}
+		}
+	}
+
+	/** Writes the child of parent and seed into child slot number slot */
+	private void fillSlot( int slot, Genome parent, Genome seed )
+	{
+		Genome child = pop.childSlot( slot );
+		parent.getFitness();
+		parent.copyInto( child );
+		child.swapGenes( seed );
+		filled[ slot ] = true;
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Bonus Assignment #1
+ * CSCI 3102 Fall 2014
+ * author Shane McCulley
+ * date October 11, 2014
+ * version 0.1
+ **/
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * A GAListener that writes every generation to a file as it happens, one line each.  A file
+ * ending in .json gets a JSON array of objects, any other file gets CSV with a header line.  
+ * Lines are buffered, so close the writer when the runs are done to flush them and, for 
+ * JSON, close the array.  
+ * 
+ * Islands on several threads can share one writer; each line is written whole.  
+ * 
+ * @author Shane McCulley
+ */
+public class MetricsWriter implements GAListener, Closeable
+{
+	//Instance variables
+	private final PrintWriter out;
+	private final boolean json;
+	private boolean first = true;     //No generation written yet
+	
+	/**
+	 * Creates the file, replacing any file with that name.  
+	 * @param fileName The file to write, JSON if it ends in .json, otherwise CSV.  
+	 * @throws IOException If the file can not be created.  
+	 */
+	public MetricsWriter( String fileName ) throws IOException
+	{
+		out = new PrintWriter( new BufferedWriter( new FileWriter( fileName ) ) );
+		json = fileName.toLowerCase().endsWith( ".json" );
+		
+		out.println( json ? "[" : GenerationStats.csvHeader() );
+	}
+	
+	@Override
+	public synchronized void generationDone( GenerationStats stats )
+	{
+		if( json )
+		{
+			if( !first )
+				out.println( "," );
+			out.print( "  " + stats.toJson() );
+		}
+		else
+			out.println( stats.toCsv() );
+		
+		first = false;
+	}
+	
+	/** Closes the JSON array if needed, then flushes and closes the file */
+	@Override
+	public synchronized void close()
+	{
+		if( json )
+			out.println( first ? "]" : "\n]" );
+		out.close();
+	}
+}
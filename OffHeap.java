@@ -0,0 +1,105 @@
+/*
+ * Bonus Assignment #1
+ * CSCI 3102 Fall 2014
+ * author Shane McCulley
+ * date October 11, 2014
+ * version 0.1
+ **/
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * A block of memory outside the Java heap, holding the population matrix or the weights of
+ * an input too large to keep on the heap.  The collector never copies or scans it, so a run
+ * on millions of values keeps a heap of a few MB however big its genomes are.
+ *
+ * The block is a direct ByteBuffer in native byte order, and the matrix and weights are
+ * LongBuffer and IntBuffer views of it, which Genome and FitnessCalc read in place.  Its
+ * lifetime is explicit: close frees the memory at once, instead of whenever the collector
+ * gets around to the buffer.  No view may be used after close; Population and FitnessCalc
+ * point theirs at empty buffers first, so a stray read throws instead of reading freed memory.
+ *
+ * Direct memory is limited by -XX:MaxDirectMemorySize, which is the maximum heap unless it
+ * is set, so a run with a small -Xmx must raise it.  One block holds at most 2 GB.
+ *
+ * @author Shane McCulley
+ */
+public class OffHeap implements AutoCloseable
+{
+	/* Unsafe.invokeCleaner bound to the Unsafe instance, or null if this JVM does not have it.
+	 * Without it close only drops the buffer and the collector frees it later */
+	private final static MethodHandle FREE = findCleaner();
+
+	//Instance variables
+	private ByteBuffer bytes;              //null once closed
+
+	/**
+	 * Allocates a block of zeroed memory.
+	 * @param size Size in bytes.
+	 * @throws IllegalArgumentException If size is over 2 GB.
+	 */
+	public OffHeap( long size )
+	{
+		if( size > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "off heap block of " + size + " bytes is over 2 GB" );
+
+		bytes = ByteBuffer.allocateDirect( (int)size ).order( ByteOrder.nativeOrder() );
+	}
+
+	/** @return The block as longs, in native byte order */
+	public LongBuffer asLongBuffer()
+	{
+		return bytes.asLongBuffer();
+	}
+
+	/** @return The block as ints, in native byte order */
+	public IntBuffer asIntBuffer()
+	{
+		return bytes.asIntBuffer();
+	}
+
+	/** Frees the memory.  Every view of it must be dropped first.  Closing twice does nothing */
+	@Override
+	public void close()
+	{
+		ByteBuffer freed = bytes;
+		bytes = null;
+		if( freed == null || FREE == null )
+			return;
+
+		try
+		{
+			FREE.invokeExact( freed );
+		}
+		catch( Throwable e )
+		{
+			//Left to the collector
+		}
+	}
+
+	/** @return Unsafe.invokeCleaner bound to the Unsafe instance, or null if it can not be found */
+	private static MethodHandle findCleaner()
+	{
+		try
+		{
+			Class<?> unsafeClass = Class.forName( "sun.misc.Unsafe" );
+			Field theUnsafe = unsafeClass.getDeclaredField( "theUnsafe" );
+			theUnsafe.setAccessible( true );
+
+			return MethodHandles.lookup()
+				.findVirtual( unsafeClass, "invokeCleaner", MethodType.methodType( void.class, ByteBuffer.class ) )
+				.bindTo( theUnsafe.get( null ) );
+		}
+		catch( ReflectiveOperationException | RuntimeException e )
+		{
+			return null;
+		}
+	}
+}
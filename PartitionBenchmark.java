@@ -0,0 +1,254 @@
+/*
+ * Bonus Assignment #1
+ * CSCI 3102 Fall 2014
+ * author Shane McCulley
+ * date October 11, 2014
+ * version 0.1
+ **/
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+/**
+ * Micro and end-to-end benchmarks for the hot paths of the algorithm, so changes to them
+ * can be measured.  Like the rest of the project it needs nothing but the JDK:
+ *
+ *     javac *.java
+ *     java PartitionBenchmark [-genes 1000,30000] [-pop 100,1000] [-iterations 5] [-only name] [-no-ga]
+ *
+ * Each benchmark runs WARMUP_ITERATIONS untimed iterations so the JIT can compile it, then
+ * the measured iterations.  An iteration repeats the operation until it has run for at least
+ * ITERATION_NANOS.  For every benchmark we report the mean time per operation, the bytes
+ * allocated per operation on the benchmark thread and the garbage collections during the
+ * measured iterations.  Results are summed into sink so the JIT can not drop the work.
+ *
+ * The micro benchmarks run once per gene size, and the population benchmarks once per
+ * gene size and population size.  The runGA and runExact benchmarks solve dnums.txt and
+ * dnum30000.txt from start to finish, one run per iteration.  runGA turns FindPartition.EXACT
+ * off so it always measures CHC, and runExact leaves it on so ExactSolver takes the sets it can.
+ *
+ * @author Shane McCulley
+ */
+public class PartitionBenchmark
+{
+	final static int WARMUP_ITERATIONS = 3;
+	final static long ITERATION_NANOS = 200000000L;   //0.2 seconds
+
+	/* Every result is added here so no benchmark is dead code */
+	static volatile long sink;
+
+	//Settings, changed by the arguments
+	static int[] geneSizes = { 1000, 30000 };
+	static int[] popSizes = { 100, 1000 };
+	static int iterations = 5;
+	static String only = null;
+	static boolean runGA = true;
+
+	public static void main( String[] args ) throws IOException
+	{
+		for( int i = 0; i < args.length; i++ )
+		{
+			if( args[ i ].equals( "-genes" ) && i + 1 < args.length )
+				geneSizes = parseList( args[ ++i ] );
+			else if( args[ i ].equals( "-pop" ) && i + 1 < args.length )
+				popSizes = parseList( args[ ++i ] );
+			else if( args[ i ].equals( "-iterations" ) && i + 1 < args.length )
+				iterations = Integer.parseInt( args[ ++i ] );
+			else if( args[ i ].equals( "-only" ) && i + 1 < args.length )
+				only = args[ ++i ];
+			else if( args[ i ].equals( "-no-ga" ) )
+				runGA = false;
+		}
+
+		System.out.printf( "%-28s %-18s %14s %14s %8s %8s%n", "Benchmark", "Params", "ns/op", "B/op", "GCs", "GC ms" );
+
+		for( int geneSize : geneSizes )
+		{
+			String params = "genes=" + geneSize;
+			FitnessCalc calc = new FitnessCalc( randomData( geneSize, 42 ) );
+			GARandom rand = new GARandom( 42 );
+			Genome genomeA = new Genome( calc, rand );
+			Genome genomeB = new Genome( calc, rand );
+			Genome unsummed = Genome.copyOf( genomeA );
+
+			bench( "Genome.hammingDistance", params, () -> genomeA.hammingDistance( genomeB ) );
+			bench( "Genome.bitDifference", params, () -> genomeA.bitDifference( genomeB ).cardinality() );
+			bench( "Genome.mutateGenome", params, () -> genomeA.mutateGenome( FindPartition.MUTATION_RATE, rand ).getFitness() );
+			bench( "FitnessCalc.getFitness", params, () -> calc.getFitness( unsummed ) );
+			bench( "FindPartition.createSeed", params, () -> FindPartition.createSeed( genomeA, genomeB, rand ).cardinality() );
+			Genome xorSeed = Genome.copyOf( genomeA );
+			int[] positions = new int[ geneSize ];
+			bench( "createSeed, scratch", params, () -> FindPartition.createSeed( genomeA, genomeB, rand, xorSeed, positions ).cardinality() );
+
+			for( int popSize : popSizes )
+			{
+				String popParams = params + " pop=" + popSize;
+				Population pop = new Population( popSize, calc, rand );
+				Population children = new Population( popSize, calc, rand );
+				boolean[] filled = new boolean[ popSize ];
+				Arrays.fill( filled, true );
+				children.getFittest();  //sum every child once, as runGA's children arrive with known sums
+
+				/* Each operation copies popSize children in behind the parents, then selects */
+				bench( "Population.bestNGenomes", popParams, () -> {
+					pop.reserveChildren( popSize );
+					for( int i = 0; i < popSize; i++ )
+						children.getGenome( i ).copyInto( pop.childSlot( i ) );
+					pop.keepChildren( filled, popSize );
+					pop.bestNGenomes( pop, popSize );
+					return pop.getGenome( 0 ).getFitness();
+				} );
+
+				bench( "Population.cataclysmPop", popParams, () -> {
+					pop.cataclysmPop( FindPartition.MUTATION_RATE, rand );
+					return pop.getGenome( popSize - 1 ).getFitness();
+				} );
+			}
+		}
+
+		if( runGA )
+		{
+			for( String file : new String[] { "dnums.txt", "dnum30000.txt" } )
+			{
+				SetReader in = new SetReader( file );
+				in.nextSet();
+				int[] inputData = Arrays.copyOf( in.getValues(), in.getCount() );
+				in.close();
+
+				/* One row per engine: CHC alone, then whatever ExactSolver picks for the set */
+				bench( "FindPartition.runGA", file, () -> solve( inputData, false ) );
+				bench( "FindPartition.runExact", file, () -> solve( inputData, true ) );
+			}
+		}
+	}
+
+	/**
+	 * Solves a set from start to finish.
+	 * @param inputData The set to solve.
+	 * @param exact Value of FindPartition.EXACT for the run, false to always run CHC.
+	 * @return Fitness of the answer.
+	 */
+	static long solve( int[] inputData, boolean exact )
+	{
+		boolean saved = FindPartition.EXACT;
+		FindPartition.EXACT = exact;
+		try
+		{
+			FindPartition run = new FindPartition( inputData );
+			run.announceCataclysms = false;
+			return run.solve().getFitness();
+		}
+		finally
+		{
+			FindPartition.EXACT = saved;
+		}
+	}
+
+	/**
+	 * Warms up and measures one benchmark, then prints its line of results.
+	 * @param name Name of the benchmark, matched against -only.
+	 * @param params Parameters of this run, printed with the results.
+	 * @param operation The work to measure.  Its result is added to sink.
+	 */
+	static void bench( String name, String params, LongSupplier operation )
+	{
+		if( only != null && !name.contains( only ) )
+			return;
+
+		for( int i = 0; i < WARMUP_ITERATIONS; i++ )
+			runIteration( operation );
+
+		long gcCount = gcCount();
+		long gcMillis = gcMillis();
+		long bytes = allocatedBytes();
+		long nanos = 0;
+		long operations = 0;
+
+		for( int i = 0; i < iterations; i++ )
+		{
+			long[] result = runIteration( operation );
+			nanos += result[ 0 ];
+			operations += result[ 1 ];
+		}
+
+		bytes = allocatedBytes() - bytes;
+		System.out.printf( "%-28s %-18s %14.1f %14.1f %8d %8d%n", name, params,
+						   (double)nanos / operations, (double)bytes / operations,
+						   gcCount() - gcCount, gcMillis() - gcMillis );
+	}
+
+	/** @return { nanoseconds, operations } of one iteration of at least ITERATION_NANOS */
+	static long[] runIteration( LongSupplier operation )
+	{
+		long result = 0;
+		long operations = 0;
+		long start = System.nanoTime();
+		long elapsed;
+
+		do
+		{
+			result += operation.getAsLong();
+			operations++;
+			elapsed = System.nanoTime() - start;
+		} while( elapsed < ITERATION_NANOS );
+
+		sink += result;
+		return new long[] { elapsed, operations };
+	}
+
+	/** @return Bytes allocated so far by this thread, or 0 if the JVM can not tell */
+	static long allocatedBytes()
+	{
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if( threads instanceof com.sun.management.ThreadMXBean )
+			return ( (com.sun.management.ThreadMXBean)threads ).getThreadAllocatedBytes( Thread.currentThread().getId() );
+
+		return 0;
+	}
+
+	/** @return Number of garbage collections so far, over every collector */
+	static long gcCount()
+	{
+		long count = 0;
+		for( GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans() )
+			count += Math.max( 0, gc.getCollectionCount() );
+
+		return count;
+	}
+
+	/** @return Milliseconds spent in garbage collection so far, over every collector */
+	static long gcMillis()
+	{
+		long millis = 0;
+		for( GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans() )
+			millis += Math.max( 0, gc.getCollectionTime() );
+
+		return millis;
+	}
+
+	/** @return Values of a comma separated list such as 1000,30000 */
+	static int[] parseList( String list )
+	{
+		String[] parts = list.split( "," );
+		int[] values = new int[ parts.length ];
+		for( int i = 0; i < parts.length; i++ )
+			values[ i ] = Integer.parseInt( parts[ i ].trim() );
+
+		return values;
+	}
+
+	/** @return size random values in [-1000, 1000], the same for the same seed */
+	static int[] randomData( int size, long seed )
+	{
+		Random rand = new Random( seed );
+		int[] data = new int[ size ];
+		for( int i = 0; i < size; i++ )
+			data[ i ] = rand.nextInt( 2001 ) - 1000;
+
+		return data;
+	}
+}
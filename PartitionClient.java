@@ -0,0 +1,80 @@
+/*
+ * Bonus Assignment #1
+ * CSCI 3102 Fall 2014
+ * author Shane McCulley
+ * date October 11, 2014
+ * version 0.1
+ **/
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends sets to a PartitionServer and reads the answers in the binary form.  One client
+ * keeps its connections open between calls and may be used by several threads at once.  
+ * 
+ * @author Shane McCulley
+ */
+public class PartitionClient
+{
+	//Instance variables
+	private final HttpClient http = HttpClient.newHttpClient();
+	private final String address;      //http://localhost:port/solve
+	
+	/** Creates a client of the server on {@param port} of this machine */
+	public PartitionClient( int port )
+	{
+		address = "http://localhost:" + port + "/solve";
+	}
+	
+	/**
+	 * Solves every set in one request.  
+	 * @param groups Number of groups to split each set into.  
+	 * @param sets The sets.  
+	 * @return One result per set, in order.  
+	 * @throws IOException If the server can not be reached or refuses the request.  
+	 * @throws InterruptedException If interrupted while waiting for the answer.  
+	 */
+	public List<PartitionResult> solve( int groups, int[]... sets ) throws IOException, InterruptedException
+	{
+		/* The body is the sets in the form of an input file */
+		StringBuilder body = new StringBuilder();
+		for( int[] set : sets )
+		{
+			body.append( '{' );
+			for( int i = 0; i < set.length; i++ )
+				body.append( ( i == 0 ) ? "" : "," ).append( set[ i ] );
+			body.append( "}\n" );
+		}
+		
+		HttpRequest request = HttpRequest.newBuilder( URI.create( address + "?format=binary&k=" + groups ) )
+				.POST( HttpRequest.BodyPublishers.ofString( body.toString() ) ).build();
+		HttpResponse<byte[]> response = http.send( request, HttpResponse.BodyHandlers.ofByteArray() );
+		
+		if( response.statusCode() != 200 )
+			throw new IOException( "Server answered " + response.statusCode() + ": " 
+								   + new String( response.body(), StandardCharsets.UTF_8 ).trim() );
+		
+		DataInputStream in = new DataInputStream( new ByteArrayInputStream( response.body() ) );
+		int count = in.readInt();
+		List<PartitionResult> results = new ArrayList<PartitionResult>( count );
+		for( int r = 0; r < count; r++ )
+			results.add( PartitionResult.readFrom( in ) );
+		
+		return results;
+	}
+	
+	/** Solves every set into 2 groups, see {@link #solve(int, int[][])} {@param sets The sets} @return The results */
+	public List<PartitionResult> solve( int[]... sets ) throws IOException, InterruptedException
+	{
+		return solve( 2, sets );
+	}
+}
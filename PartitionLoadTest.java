@@ -0,0 +1,225 @@
+/*
+ * Bonus Assignment #1
+ * CSCI 3102 Fall 2014
+ * author Shane McCulley
+ * date October 11, 2014
+ * version 0.1
+ **/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Load test of PartitionServer over loopback.  Starts a server in this JVM, unless -port
+ * names one already running, then has several client threads send requests of random
+ * small sets as fast as they are answered.  Prints the throughput and latency percentiles,
+ * and checks every answer: one group per value, group sums that match the set and add up
+ * to its total, and a fitness that matches the sums.  None of this uses the solver code.
+ *
+ * Before the load, one request splits a set into WIDE_GROUPS groups, so group ids above 127,
+ * which the binary form sends as unsigned bytes, are checked too, and one splits values of
+ * up to 2 * 10^9 into 4 groups, whose sums pass 2^31.  Another sends
+ * SMALL_SETS sets of at most BRUTE_FORCE_MAX values, whose best fitness is found here by
+ * trying every subset, and the server must match it.
+ * 
+ *     java PartitionLoadTest -clients 8 -requests 500 -sets 4 -values 30
+ * 
+ * @author Shane McCulley
+ */
+public class PartitionLoadTest
+{
+	/* Groups of the wide request, more than a signed byte holds */
+	final static int WIDE_GROUPS = 200;
+	
+	/* Values up to 2 * 10^9 in the heavy request, so its group sums pass 2^31 */
+	final static int HEAVY_VALUES = 200;
+	
+	/* Sets up to this size have their best two way fitness checked by trying every subset */
+	final static int BRUTE_FORCE_MAX = 20;
+	final static int SMALL_SETS = 50;
+	
+	public static void main( String[] args ) throws Exception
+	{
+		int port = 0;
+		int clients = 8;
+		int requests = 500;        //Per client
+		int setsPerRequest = 4;
+		int values = 30;           //Per set
+		
+		for( int i = 0; i + 1 < args.length; i += 2 )
+		{
+			int value = Integer.parseInt( args[ i + 1 ] );
+			if( args[ i ].equals( "-port" ) )
+				port = value;
+			else if( args[ i ].equals( "-clients" ) )
+				clients = value;
+			else if( args[ i ].equals( "-requests" ) )
+				requests = value;
+			else if( args[ i ].equals( "-sets" ) )
+				setsPerRequest = value;
+			else if( args[ i ].equals( "-values" ) )
+				values = value;
+		}
+		
+		PartitionServer server = ( port == 0 ) ? new PartitionServer( 0 ) : null;
+		try
+		{
+			load( new PartitionClient( ( server != null ) ? server.getPort() : port ), clients, requests, setsPerRequest, values );
+		}
+		finally
+		{
+			/* Also after a failed check, or the server's threads would keep the JVM running */
+			if( server != null )
+				server.stop();
+		}
+	}
+	
+	/** Checks the wide request, then runs the load of the class comment against client and prints its numbers */
+	private static void load( PartitionClient client, int clients, int requests, int setsPerRequest, int values ) throws Exception
+	{
+		/* Two values per group, so nearly every group id is used */
+		GARandom wideRand = new GARandom( -1 );
+		int[] wide = new int[ 2 * WIDE_GROUPS ];
+		for( int i = 0; i < wide.length; i++ )
+			wide[ i ] = wideRand.nextInt( 2000 ) + 1;
+		check( wide, client.solve( WIDE_GROUPS, wide ).get( 0 ) );
+		System.out.println( "k=" + WIDE_GROUPS + " answer checked" );
+		
+		/* Group sums far above 2^31, whose spread must be capped rather than wrap negative */
+		int[] heavy = new int[ HEAVY_VALUES ];
+		for( int i = 0; i < heavy.length; i++ )
+			heavy[ i ] = wideRand.nextInt( 2000000000 ) + 1;
+		check( heavy, client.solve( 4, heavy ).get( 0 ) );
+		System.out.println( "k=4 answer with sums above 2^31 checked" );
+		
+		int[][] small = new int[ SMALL_SETS ][];
+		for( int s = 0; s < small.length; s++ )
+		{
+			small[ s ] = new int[ 1 + wideRand.nextInt( BRUTE_FORCE_MAX ) ];
+			for( int i = 0; i < small[ s ].length; i++ )
+				small[ s ][ i ] = wideRand.nextInt( 2000 ) - 999;
+		}
+		List<PartitionResult> smallResults = client.solve( small );
+		for( int s = 0; s < small.length; s++ )
+			check( small[ s ], smallResults.get( s ) );
+		System.out.println( SMALL_SETS + " small answers checked by brute force" );
+		
+		/* Every client thread sends its requests in turn and records how long each took */
+		ExecutorService threads = Executors.newFixedThreadPool( clients );
+		List<Future<long[]>> runs = new ArrayList<Future<long[]>>();
+		long begin = System.nanoTime();
+		
+		for( int c = 0; c < clients; c++ )
+		{
+			GARandom rand = new GARandom( c );
+			runs.add( threads.submit( () -> {
+				long[] latencies = new long[ requests ];
+				for( int r = 0; r < requests; r++ )
+				{
+					int[][] sets = new int[ setsPerRequest ][ values ];
+					for( int[] set : sets )
+						for( int i = 0; i < set.length; i++ )
+							set[ i ] = rand.nextInt( 2000 ) - 999;
+					
+					long start = System.nanoTime();
+					List<PartitionResult> results = client.solve( sets );
+					latencies[ r ] = System.nanoTime() - start;
+					
+					for( int s = 0; s < sets.length; s++ )
+						check( sets[ s ], results.get( s ) );
+				}
+				return latencies;
+			} ) );
+		}
+		
+		long[] all = new long[ clients * requests ];
+		int filled = 0;
+		try
+		{
+			for( Future<long[]> run : runs )
+			{
+				long[] latencies = run.get();
+				System.arraycopy( latencies, 0, all, filled, latencies.length );
+				filled += latencies.length;
+			}
+		}
+		finally
+		{
+			threads.shutdownNow();
+		}
+		double seconds = ( System.nanoTime() - begin ) / 1e9;
+		
+		Arrays.sort( all );
+		System.out.printf( "%d requests of %d sets of %d values from %d clients in %.2f s%n", 
+						   all.length, setsPerRequest, values, clients, seconds );
+		System.out.printf( "%.0f requests/s, %.0f sets/s%n", all.length / seconds, all.length * setsPerRequest / seconds );
+		System.out.printf( "latency ms: p50 %.2f, p90 %.2f, p99 %.2f, max %.2f%n", percentile( all, 50 ), 
+						   percentile( all, 90 ), percentile( all, 99 ), all[ all.length - 1 ] / 1e6 );
+	}
+	
+	/** @return The p-th percentile of the sorted nanosecond latencies, in ms */
+	private static double percentile( long[] sorted, int p )
+	{
+		return sorted[ Math.min( sorted.length - 1, sorted.length * p / 100 ) ] / 1e6;
+	}
+	
+	/** 
+	 * Throws if result is not a valid partition of set: the groups must cover the set, their 
+	 * sums must match the values and add up to the total, and the fitness must be the largest 
+	 * minus the smallest sum, capped at Integer.MAX_VALUE.  A two way answer on at most BRUTE_FORCE_MAX values must also 
+	 * have the best fitness, found by trying every subset.  
+	 */
+	private static void check( int[] set, PartitionResult result )
+	{
+		if( result.groups.length != set.length )
+			throw new IllegalStateException( "Answer has " + result.groups.length + " groups for " + set.length + " values" );
+		
+		long total = 0;
+		long[] sums = new long[ result.groupSums.length ];
+		for( int i = 0; i < set.length; i++ )
+		{
+			sums[ result.getGroup( i ) ] += set[ i ];
+			total += set[ i ];
+		}
+		if( !Arrays.equals( sums, result.groupSums ) )
+			throw new IllegalStateException( "Group sums " + Arrays.toString( result.groupSums ) + " should be " + Arrays.toString( sums ) );
+		
+		long reported = 0;
+		long largest = Long.MIN_VALUE;
+		long smallest = Long.MAX_VALUE;
+		for( long sum : result.groupSums )
+		{
+			reported += sum;
+			largest = Math.max( largest, sum );
+			smallest = Math.min( smallest, sum );
+		}
+		if( reported != total )
+			throw new IllegalStateException( "Group sums add up to " + reported + ", the set to " + total );
+		if( set.length > 0 && result.fitness != Math.min( largest - smallest, Integer.MAX_VALUE ) )
+			throw new IllegalStateException( "Fitness " + result.fitness + " does not match the group sums " + Arrays.toString( result.groupSums ) );
+		
+		if( result.groupSums.length == 2 && set.length <= BRUTE_FORCE_MAX && result.fitness != bestFitness( set, total ) )
+			throw new IllegalStateException( "Fitness " + result.fitness + " should be " + bestFitness( set, total ) );
+	}
+	
+	/** @return The smallest | total - 2 * subset sum | over every subset of set, by brute force */
+	private static long bestFitness( int[] set, long total )
+	{
+		long best = Math.abs( total );
+		for( int subset = 1; subset < ( 1 << set.length ); subset++ )
+		{
+			long sum = 0;
+			for( int i = 0; i < set.length; i++ )
+			{
+				if( ( subset & ( 1 << i ) ) != 0 )
+					sum += set[ i ];
+			}
+			best = Math.min( best, Math.abs( total - 2 * sum ) );
+		}
+		return best;
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Bonus Assignment #1
+ * CSCI 3102 Fall 2014
+ * author Shane McCulley
+ * date October 11, 2014
+ * version 0.1
+ **/
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * The answer PartitionServer sends for one set: the group of every value in input order,
+ * the sum of every group, the fitness and the engine that found it.  It is sent either as
+ * JSON or in a compact binary form that PartitionClient reads back:
+ *
+ *     int groups, int n, long fitness, UTF engine, groups longs of sums, n bytes of group ids
+ *
+ * all big endian, as DataOutputStream writes them.  One byte per value is an eighth of the
+ * JSON for small values, and a client reads it without parsing text.  The ids are unsigned,
+ * 0 to 255, so read them with getGroup rather than from groups directly.
+ *
+ * @author Shane McCulley
+ */
+public class PartitionResult
+{
+	//Instance variables
+	public final long fitness;
+	public final String engine;
+	public final long[] groupSums;
+	public final byte[] groups;      //Group of each input value, 0 to groupSums.length - 1, unsigned
+
+	/**
+	 * Creates a result from each value's group, summing the groups.
+	 * @param values The input set.
+	 * @param groups Group of each value.
+	 * @param groupCount Number of groups.
+	 * @param fitness Fitness of the partition.
+	 * @param engine Name of the engine that found it.
+	 */
+	public PartitionResult( int[] values, byte[] groups, int groupCount, long fitness, String engine )
+	{
+		this.fitness = fitness;
+		this.engine = engine;
+		this.groups = groups;
+		groupSums = new long[ groupCount ];
+		for( int i = 0; i < values.length; i++ )
+			groupSums[ groups[ i ] & 0xFF ] += values[ i ];
+	}
+
+	private PartitionResult( long fitness, String engine, long[] groupSums, byte[] groups )
+	{
+		this.fitness = fitness;
+		this.engine = engine;
+		this.groupSums = groupSums;
+		this.groups = groups;
+	}
+
+	/** @return The result of a two way partition, group 1 being the set genes of {@param chromo} @param values The input set @param engine Its name */
+	public static PartitionResult of( int[] values, Genome chromo, String engine )
+	{
+		byte[] groups = new byte[ values.length ];
+		for( int i = chromo.nextSetBit( 0 ); i >= 0; i = chromo.nextSetBit( i + 1 ) )
+			groups[ i ] = 1;
+
+		return new PartitionResult( values, groups, 2, chromo.getFitness(), engine );
+	}
+
+	/** @return The result of a K way partition {@param values The input set} {@param chromo The partition} */
+	public static PartitionResult of( int[] values, KGenome chromo )
+	{
+		byte[] groups = new byte[ values.length ];
+		for( int i = 0; i < values.length; i++ )
+			groups[ i ] = (byte)chromo.getGene( i );
+
+		return new PartitionResult( values, groups, chromo.getGroups(), chromo.getFitness(), "CHC" );
+	}
+
+	/** @return The group of value {@param i}, 0 to 255 */
+	public int getGroup( int i )
+	{
+		return groups[ i ] & 0xFF;
+	}
+	
+	/** @return This result as one JSON object */
+	public String toJson()
+	{
+		StringBuilder json = new StringBuilder( 32 + 3 * groups.length );
+		json.append( "{\"fitness\": " ).append( fitness );
+		json.append( ", \"engine\": \"" ).append( engine ).append( '"' );
+
+		json.append( ", \"groupSums\": [" );
+		for( int g = 0; g < groupSums.length; g++ )
+			json.append( ( g == 0 ) ? "" : ", " ).append( groupSums[ g ] );
+
+		json.append( "], \"groups\": [" );
+		for( int i = 0; i < groups.length; i++ )
+			json.append( ( i == 0 ) ? "" : "," ).append( getGroup( i ) );
+
+		return json.append( "]}" ).toString();
+	}
+
+	/** Writes this result in the binary form of the class comment {@param out Where to write} */
+	public void writeTo( DataOutputStream out ) throws IOException
+	{
+		out.writeInt( groupSums.length );
+		out.writeInt( groups.length );
+		out.writeLong( fitness );
+		out.writeUTF( engine );
+		for( long sum : groupSums )
+			out.writeLong( sum );
+		out.write( groups );
+	}
+
+	/** @return A result written by writeTo {@param in Where to read} */
+	public static PartitionResult readFrom( DataInputStream in ) throws IOException
+	{
+		long[] groupSums = new long[ in.readInt() ];
+		byte[] groups = new byte[ in.readInt() ];
+		long fitness = in.readLong();
+		String engine = in.readUTF();
+		for( int g = 0; g < groupSums.length; g++ )
+			groupSums[ g ] = in.readLong();
+		in.readFully( groups );
+
+		return new PartitionResult( fitness, engine, groupSums, groups );
+	}
+}
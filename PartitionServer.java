@@ -0,0 +1,323 @@
+/*
+ * Bonus Assignment #1
+ * CSCI 3102 Fall 2014
+ * author Shane McCulley
+ * date October 11, 2014
+ * version 0.1
+ **/
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Solves sets sent over HTTP on the loopback interface, so a pipeline can keep one warm JVM
+ * instead of starting FindPartition for every job.  POST the sets to /solve in the same form
+ * as an input file, {1, 2, 3} {4, 5}, and get one PartitionResult per set back in order.
+ * Query parameters:
+ *
+ *     format=json     JSON, {"results": [ ... ]}, the default
+ *     format=binary   an int count, then each result in PartitionResult's binary form
+ *     k=N             split each set into N groups instead of 2
+ *     budget=MS       stop each set after MS ms with the best partition found so far
+ *
+ * A bad request gets 400 with the reason as text, anything but a POST gets 405.
+ *
+ * The HTTP threads only parse and answer.  Every set becomes a job on one queue, and
+ * WORKERS solver threads take jobs from it.  A worker that takes a small set also takes
+ * the small sets queued right behind it, up to BATCH_VALUES values in all, and solves them
+ * one after another, so a burst of small sets from concurrent requests costs one queue
+ * hand off and wake up per batch instead of one per set.  A large set is always taken on
+ * its own, so it only holds up the worker solving it, never the sets queued behind it, and
+ * the sets of one large request are solved in parallel.  The threads live as long as the
+ * server, so the solver code stays JIT compiled between requests.
+ *
+ * @author Shane McCulley
+ */
+public class PartitionServer
+{
+	/* Number of solver threads */
+	final static int WORKERS = Runtime.getRuntime().availableProcessors();
+
+	/* Largest set a worker batches with others */
+	final static int SMALL_SET = 1000;
+
+	/* Most values, summed over its sets, in one batch */
+	final static int BATCH_VALUES = 4096;
+
+	/* Number of threads answering HTTP requests.  They mostly wait for the workers */
+	final static int HTTP_THREADS = 4 * WORKERS;
+
+	/* Answers are small and sent in one write, so waiting to fill a packet only adds the 
+	 * peer's delayed ACK, about 40 ms, to every request.  Read once, when the first server starts */
+	static
+	{
+		if( System.getProperty( "sun.net.httpserver.nodelay" ) == null )
+			System.setProperty( "sun.net.httpserver.nodelay", "true" );
+	}
+
+	/** One set waiting to be solved, and where its answer goes */
+	private static class Job
+	{
+		final int[] values;
+		final int groups;
+		final long budget;
+		final CompletableFuture<PartitionResult> result = new CompletableFuture<PartitionResult>();
+
+		Job( int[] values, int groups, long budget )
+		{
+			this.values = values;
+			this.groups = groups;
+			this.budget = budget;
+		}
+	}
+
+	//Instance variables
+	private final HttpServer server;
+	private final ExecutorService httpThreads = Executors.newFixedThreadPool( HTTP_THREADS );
+	private final LinkedBlockingQueue<Job> queue = new LinkedBlockingQueue<Job>();
+	private final Thread[] workers = new Thread[ WORKERS ];
+	private volatile boolean running = true;
+
+	/**
+	 * Starts the server on the loopback interface.
+	 * @param port Port to listen on, or 0 for any free port.
+	 * @throws IOException If the port can not be bound.
+	 */
+	public PartitionServer( int port ) throws IOException
+	{
+		server = HttpServer.create( new InetSocketAddress( InetAddress.getLoopbackAddress(), port ), 0 );
+		server.createContext( "/solve", this::handle );
+		server.setExecutor( httpThreads );
+
+		for( int w = 0; w < workers.length; w++ )
+		{
+			workers[ w ] = new Thread( this::work, "partition worker " + w );
+			workers[ w ].setDaemon( true );
+			workers[ w ].start();
+		}
+		server.start();
+	}
+
+	/** @return The port the server listens on */
+	public int getPort()
+	{
+		return server.getAddress().getPort();
+	}
+
+	/** 
+	 * Stops taking requests, lets the ones in progress finish for up to a second, then stops the
+	 * workers and fails the sets still queued, so no handler waits for them forever
+	 */
+	public void stop()
+	{
+		server.stop( 1 );
+		httpThreads.shutdown();
+		running = false;
+		for( Thread worker : workers )
+			worker.interrupt();
+
+		ArrayList<Job> left = new ArrayList<Job>();
+		queue.drainTo( left );
+		for( Job job : left )
+			job.result.completeExceptionally( new IllegalStateException( "Server stopped" ) );
+	}
+
+	/** Worker loop: take a job, or a batch of small ones, and solve them, until the server stops */
+	private void work()
+	{
+		ArrayList<Job> batch = new ArrayList<Job>();
+		while( running )
+		{
+			try
+			{
+				batch.add( queue.take() );
+			}
+			catch( InterruptedException e )
+			{
+				break;
+			}
+
+			/* Another worker may take the head between peek and poll, so poll can hand back a 
+			 * large set.  It then ends the batch, and is solved like any other */
+			int values = batch.get( 0 ).values.length;
+			boolean small = values <= SMALL_SET;
+			while( small )
+			{
+				Job next = queue.peek();
+				if( next == null || next.values.length > SMALL_SET || values + next.values.length > BATCH_VALUES )
+					break;
+				next = queue.poll();
+				if( next == null )
+					break;
+				batch.add( next );
+				values += next.values.length;
+				small = next.values.length <= SMALL_SET;
+			}
+
+			for( Job job : batch )
+				run( job );
+			batch.clear();
+		}
+	}
+
+	/** 
+	 * Solves one job and completes its result.  Anything thrown, an Error included, fails the job 
+	 * instead of leaving its handler waiting, and the worker goes on to the next one
+	 */
+	private static void run( Job job )
+	{
+		try
+		{
+			job.result.complete( solve( job.values, job.groups, job.budget ) );
+		}
+		catch( Throwable e )
+		{
+			job.result.completeExceptionally( e );
+		}
+	}
+
+	/**
+	 * Solves one set the way FindPartition would, without printing anything.
+	 * @param values The set.
+	 * @param groups Number of groups.
+	 * @param budget Time budget in ms, 0 for none.
+	 * @return The partition.
+	 */
+	static PartitionResult solve( int[] values, int groups, long budget )
+	{
+		if( values.length == 0 )
+			return new PartitionResult( values, new byte[ 0 ], groups, 0, "NONE" );
+
+		if( groups > 2 )
+		{
+			KPartition run = new KPartition( values, groups );
+			run.announceCataclysms = false;
+			run.timeBudget = budget;
+			return PartitionResult.of( values, run.solve() );
+		}
+
+		FindPartition run = new FindPartition( values );
+		run.announceCataclysms = false;
+		run.timeBudget = budget;
+		Genome best = run.solve();
+		PartitionResult result = PartitionResult.of( values, best, run.engine.toString() );
+		run.close();
+		return result;
+	}
+
+	/** Answers one request to /solve */
+	private void handle( HttpExchange exchange ) throws IOException
+	{
+		try
+		{
+			if( !exchange.getRequestMethod().equals( "POST" ) )
+			{
+				reply( exchange, 405, "text/plain", "POST the sets to solve\n".getBytes( StandardCharsets.UTF_8 ) );
+				return;
+			}
+
+			/* Read the options, then every set of the body, and queue a job for each */
+			String format = parameter( exchange.getRequestURI(), "format", "json" );
+			int groups = Integer.parseInt( parameter( exchange.getRequestURI(), "k", "2" ) );
+			long budget = Long.parseLong( parameter( exchange.getRequestURI(), "budget", "0" ) );
+			if( groups < 2 || groups > 256 )
+				throw new IllegalArgumentException( "k must be 2 to 256" );
+			if( !format.equals( "json" ) && !format.equals( "binary" ) )
+				throw new IllegalArgumentException( "format must be json or binary" );
+
+			/* Every set is parsed before any is queued, then all are handed over in one call */
+			ArrayList<Job> jobs = new ArrayList<Job>();
+			SetReader in = new SetReader( exchange.getRequestBody().readAllBytes() );
+			while( in.nextSet() )
+				jobs.add( new Job( Arrays.copyOf( in.getValues(), in.getCount() ), groups, budget ) );
+			queue.addAll( jobs );
+
+			/* Answer once every set is solved, in the order they were sent */
+			if( format.equals( "binary" ) )
+			{
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				DataOutputStream out = new DataOutputStream( bytes );
+				out.writeInt( jobs.size() );
+				for( Job job : jobs )
+					job.result.get().writeTo( out );
+				out.flush();
+				reply( exchange, 200, "application/octet-stream", bytes.toByteArray() );
+			}
+			else
+			{
+				StringBuilder json = new StringBuilder( "{\"results\": [" );
+				for( int j = 0; j < jobs.size(); j++ )
+					json.append( ( j == 0 ) ? "\n  " : ",\n  " ).append( jobs.get( j ).result.get().toJson() );
+				json.append( "\n]}\n" );
+				reply( exchange, 200, "application/json", json.toString().getBytes( StandardCharsets.UTF_8 ) );
+			}
+		}
+		catch( IOException | IllegalArgumentException e )
+		{
+			reply( exchange, 400, "text/plain", ( e.getMessage() + "\n" ).getBytes( StandardCharsets.UTF_8 ) );
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			reply( exchange, 503, "text/plain", "Server stopping\n".getBytes( StandardCharsets.UTF_8 ) );
+		}
+		catch( ExecutionException e )
+		{
+			reply( exchange, 500, "text/plain", ( "Error solving a set: " + e.getCause() + "\n" ).getBytes( StandardCharsets.UTF_8 ) );
+		}
+		finally
+		{
+			exchange.close();
+		}
+	}
+
+	/** Sends status and body as the whole response */
+	private static void reply( HttpExchange exchange, int status, String type, byte[] body ) throws IOException
+	{
+		exchange.getResponseHeaders().set( "Content-Type", type );
+		exchange.sendResponseHeaders( status, body.length );
+		try( OutputStream out = exchange.getResponseBody() )
+		{
+			out.write( body );
+		}
+	}
+
+	/** @return The value of query parameter name in uri, or fallback if it is not there */
+	private static String parameter( URI uri, String name, String fallback )
+	{
+		String query = uri.getRawQuery();
+		if( query == null )
+			return fallback;
+
+		for( String pair : query.split( "&" ) )
+		{
+			int equals = pair.indexOf( '=' );
+			if( equals > 0 && pair.substring( 0, equals ).equals( name ) )
+				return pair.substring( equals + 1 );
+		}
+		return fallback;
+	}
+
+	/** Runs the server until the process is stopped.  {@param args The port, 8080 if none is given} */
+	public static void main( String[] args ) throws IOException
+	{
+		int port = ( args.length > 0 ) ? Integer.parseInt( args[ 0 ] ) : 8080;
+		PartitionServer server = new PartitionServer( port );
+		System.out.println( "Solving sets posted to http://localhost:" + server.getPort() + "/solve" );
+	}
+}
@@ -7,27 +7,78 @@
  **/
 
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.stream.IntStream;
 
 
 
 /** 
  * 	This class models our population for our genetic algorithm.  The population
  *	takes an extra argument constructor with boolean for keeping duplicates.  
- *	Population uses an array to keep track of the genomes for our genetic algorithm.  
+ *
+ *	Population stores every genome as one row of a single matrix of longs instead of
+ *	as separate objects.  Row r holds its genes in words [r * words, (r + 1) * words).
+ *	Each row has a Genome view that reads and writes those words in place, and the
+ *	parallel arrays fitness and order hold each row's fitness and the row order of
+ *	the population.  order[0..size) are the live genomes; the rows listed after size
+ *	are free and are handed out to children.  Selection only permutes order, so no
+ *	genome is copied or allocated during a generation.
+ *
+ *	The live genomes are kept in fitness order: order[0..sorted) is sorted, and the
+ *	genomes added after it are the children of the current generation.  Selection sorts
+ *	only the children and merges them with the sorted parents, stopping once it has the
+ *	survivors, so getFittest is order[0] and never sorts.  Genomes must only be changed
+ *	through Population methods, since a change through a view would not be re-sorted.
+ *
+ *	When duplicates are not allowed, the live rows are also kept in an open addressing
+ *	hash table keyed by each genome's Zobrist hash.  A new genome is only compared gene
+ *	by gene with the live genomes of the same hash, so rejecting duplicates costs about
+ *	one lookup instead of a scan of the whole population.
+ *
+ *	The matrix is sized for twice the population, so the parents and the children
+ *	of one generation each have a half of it.
+ *
+ *	The matrix is a LongBuffer.  It wraps a long[] unless the FitnessCalc keeps its values
+ *	off the heap, in which case it is a view of an OffHeap block, so an input of millions
+ *	of values keeps neither its weights nor its genomes on the heap.  close frees the block;
+ *	the owner of the population calls it once it is done, see Island.close.
  *
  *	@author Shane McCulley 
  */ 
  public class Population 
  {
 	 //Instance variables.  Duplicates can be modified by 3 argument constructor.  
-	 ArrayList<Genome> genomes; 
 	 boolean duplicates = true; 
 	 
+	 FitnessCalc fitnessCalc;  //Fitness of the input, decides the size of every genome
+	 int words;            //Words per row, Genome.wordsFor( geneSize )
+	 LongBuffer matrix;    //rows * words longs holding every genome's genes
+	 OffHeap block;        //Memory of matrix when it is off the heap, else null
+	 Genome[] rows;        //Genome view of each row of matrix
+	 int[] fitness;        //Fitness of each row, filled in before sorting
+	 int[] order;          //Permutation of row indices, live rows first
+	 int size = 0;         //Number of live genomes
+	 int sorted = 0;       //order[0..sorted) is in fitness order, the rest were added since
+
+	 /* Scratch space for sorting order by fitness, packed as fitness << 32 | row */
+	 long[] sortKeys;
+	 int[] merged;         //Scratch space for merging, one entry per row
+
+	 /* Genomes whose fitness was computed since Island last read and reset it: random genomes, 
+	  * children, mutants, perturbed seeds, immigrants and the partitions LocalSearch scores */
+	 long evaluations = 0;
+
+	 /* Hash index of the live rows, only built when duplicates are not allowed.  Each slot 
+	  * holds row + 1, or 0 if empty, and the table is at most half full */
+	 int[] index;
+
 	 /**
-	  * Two argument constructor initializes the ArrayList, HashMap with the size
-	  * of the population, and populates the structures with random genomes of size 
+	  * Two argument constructor initializes the matrix with room for twice the size
+	  * of the population, and populates the first popSize rows with random genomes of size
 	  * geneSize to begin.  
 	  * 
 	  * While the popSize variable is not strictly needed, we do not expect 
@@ -35,70 +86,189 @@ import java.util.Collections;
 	  * produced to fill to popSize, a catastrophic event will occur.  
 	  * 
 	  * @param popSize The size of the population, used to set capacity of containers.
-	  * @param geneSize The size of the individual genome.  
+	  * @param fitnessCalc Fitness of the input.  The size of the individual genome is its size.  
+	  */
+	 public Population(int popSize, FitnessCalc fitnessCalc)
+	 {
+		 this( popSize, fitnessCalc, new GARandom() );
+	 }
+	 
+	 /** Same as {@code this( popSize, fitnessCalc )}, drawing the genes from {@param rand} 
+	  * @param popSize The size of the population, used to set capacity of containers.
+	  * @param fitnessCalc Fitness of the input.  The size of the individual genome is its size.  
 	  */
-	 public Population(int popSize, int geneSize)
+	 public Population(int popSize, FitnessCalc fitnessCalc, GARandom rand)
 	 {
-		 genomes = new ArrayList<Genome>( popSize );
+		 allocate( 2 * popSize, fitnessCalc );
 		 
 		 //Initialize every genome with random genes to begin
 		 for( int i = 0; i < popSize; i++)
 		 {
-			 Genome randomGenome = new Genome( geneSize );
-			 genomes.add( randomGenome );	 
+			 Genome randomGenome = rows[ order[ size++ ] ];
+			 randomGenome.randomizeGenes( rand );
 		 }
 		 
+		 mergeSorted( size );
+		 evaluations += size;
 	 }
 	 
-	 /** Calls {@code this( popSize, geneSize )} and sets the value of duplicates.
+	 /** Calls {@code this( popSize, fitnessCalc )} and sets the value of duplicates.
 	  * @param popSize The size of the population, used to set capacity of containers.
-	  * @param geneSize The size of the individual genome.  
+	  * @param fitnessCalc Fitness of the input.  The size of the individual genome is its size.  
 	  * @param duplicates Boolean: Accept/reject duplicate genomes in population
 	  */
-	 public Population(int popSize, int geneSize, boolean duplicates)
+	 public Population(int popSize, FitnessCalc fitnessCalc, boolean duplicates)
 	 {
-		 this( popSize, geneSize );
+		 this( popSize, fitnessCalc, duplicates, new GARandom() );
+	 }
+	 
+	 /** Same as {@code this( popSize, fitnessCalc, duplicates )}, drawing the genes from {@param rand} 
+	  * @param popSize The size of the population, used to set capacity of containers.
+	  * @param fitnessCalc Fitness of the input.  The size of the individual genome is its size.  
+	  * @param duplicates Boolean: Accept/reject duplicate genomes in population
+	  */
+	 public Population(int popSize, FitnessCalc fitnessCalc, boolean duplicates, GARandom rand)
+	 {
+		 this( popSize, fitnessCalc, rand );
 		 this.duplicates = duplicates; 	 
+		 rebuildIndex();
 	 }
 	 
-	 /** Zero constructor creates new empty ArrayList.  Used for adding children to a fresh pop */
+	 /** Zero constructor creates an empty population.  The matrix is allocated by the first addGenome */
 	 public Population()
 	 {
-		 genomes = new ArrayList<Genome>();
-		 
+		 allocate( 0, null );
 	 }
-	 /** Create new population and set the genomes equal to the argument
-	  * @param genomes Set new population genomes equal to this ArrayList.  
+	 /** Create new population holding copies of the genomes in the argument
+	  * @param genomes Genomes to copy into the new population.
 	  */
 	 public Population( ArrayList<Genome> genomes )
 	 {
-		 this.genomes = genomes;
+		 this();
+		 for( Genome chromo : genomes )
+			 addGenome( chromo );
 	 }
 	 
 	 /**
-	  * Returns a gene from our population at specified index.  
-	  * @param index The index of ArrayList to retrieve genome.
+	  * Creates the matrix and its parallel arrays with room for capacity genomes.
+	  * @param capacity Number of rows.
+	  * @param fitnessCalc Fitness of the input, null until the first genome is added.
+	  */
+	 private void allocate( int capacity, FitnessCalc fitnessCalc )
+	 {
+		 close();
+		 this.fitnessCalc = fitnessCalc;
+		 this.words = ( fitnessCalc == null ) ? 0 : Genome.wordsFor( fitnessCalc.getSize() );
+		 matrix = newMatrix( capacity * words );
+		 rows = new Genome[ capacity ];
+		 fitness = new int[ capacity ];
+		 order = new int[ capacity ];
+		 sortKeys = new long[ capacity ];
+		 merged = new int[ capacity ];
+
+		 for( int r = 0; r < capacity; r++ )
+		 {
+			 rows[ r ] = new Genome( fitnessCalc, matrix, r * words );
+			 order[ r ] = r;
+		 }
+	 }
+
+	 /** Doubles the number of rows, keeping the live genomes and their order */
+	 private void grow()
+	 {
+		 int capacity = rows.length;
+		 int newCapacity = Math.max( 2 * capacity, 4 );
+
+		 OffHeap oldBlock = block;
+		 LongBuffer oldMatrix = matrix;
+		 matrix = newMatrix( newCapacity * words );
+		 matrix.put( 0, oldMatrix, 0, oldMatrix.capacity() );
+		 rows = Arrays.copyOf( rows, newCapacity );
+		 fitness = Arrays.copyOf( fitness, newCapacity );
+		 order = Arrays.copyOf( order, newCapacity );
+		 sortKeys = new long[ newCapacity ];
+		 merged = new int[ newCapacity ];
+
+		 /* Old views must read the new matrix, new rows get fresh views */
+		 for( int r = 0; r < newCapacity; r++ )
+		 {
+			 if( r < capacity )
+				 rows[ r ].rebind( matrix, r * words );
+			 else
+			 {
+				 rows[ r ] = new Genome( fitnessCalc, matrix, r * words );
+				 order[ r ] = r;
+			 }
+		 }
+		 if( oldBlock != null )
+			 oldBlock.close();
+		 rebuildIndex();
+	 }
+
+	 /** @return A zeroed matrix of {@param longs} words, off the heap if fitnessCalc is, setting block */
+	 private LongBuffer newMatrix( int longs )
+	 {
+		 if( fitnessCalc == null || !fitnessCalc.isOffHeap() )
+		 {
+			 block = null;
+			 return LongBuffer.wrap( new long[ longs ] );
+		 }
+
+		 block = new OffHeap( (long)longs * Long.BYTES );
+		 return block.asLongBuffer();
+	 }
+
+	 /**
+	  * Frees the matrix if it is off the heap.  The views of its rows are pointed at an empty
+	  * buffer first, so a genome of this population used afterwards throws instead of reading
+	  * freed memory; keep Genome.copyOf copies of anything needed later.  Does nothing to a
+	  * population on the heap.
+	  */
+	 public void close()
+	 {
+		 if( block == null )
+			 return;
+
+		 LongBuffer empty = LongBuffer.allocate( 0 );
+		 for( Genome row : rows )
+			 row.rebind( empty, 0 );
+		 matrix = empty;
+		 block.close();
+		 block = null;
+	 }
+
+	 /**
+	  * Returns a gene from our population at specified index.  The genome is a view of
+	  * a row of the population, so it changes if that row is later handed to a child.
+	  * Use Genome.copyOf to keep it past the next generation.
+	  * @param index The index in the population to retrieve genome.
 	  * @return Genome at the specified index
 	  */
 	 public Genome getGenome( int index )
 	 { 
-		 return genomes.get( index );
+		 return rows[ order[ index ] ];
 	 
 	 }
 	 
 	 /**
-	  * This returns the genome with the best(lowest) fitness.  Since Genome 
-	  * implements Comparable, we can use Comparable.sort instead of 
-	  * iterating through every element to calculate fitness.  
+	  * This returns the genome with the best(lowest) fitness.  Nothing is sorted or moved: 
+	  * the best sorted genome is order[0], and only genomes added since the last selection 
+	  * are looked at besides it, which after bestNGenomes or cataclysmPop is none.  
 	  * @return The genome with the best (closest to 0) fitness 
 	  */
 	 public Genome getFittest()
 	 {
-		 // This modifies genomes itself.  Sorts by lowest fitness.  
-		 Collections.sort( genomes );
+		 Genome fittest = ( sorted > 0 ) ? rows[ order[ 0 ] ] : null;
+		 
+		 for( int i = sorted; i < size; i++ )
+		 {
+			 Genome contender = rows[ order[ i ] ];
+			 if( fittest == null || contender.compareTo( fittest ) < 0 )
+				 fittest = contender;
+		 }
 		 
 		 //Return the genome with the best (lowest) fitness.  
-		 return genomes.get( 0 ); 
+		 return fittest;
 	 }
 	 
 	 /** 
@@ -120,77 +290,528 @@ import java.util.Collections;
 			  
 	 }
 	 
-	 /** @param chromo A chromosome to be added to our genome */
+	 /** @param chromo A chromosome to be copied into the next free row of our population */
 	 public void addGenome( Genome chromo )
 	 {
 		 /* Add without checking if duplicates are allowed */
-		 if( duplicates )
+		 if( duplicates || !contains( chromo ) )
 		 {
-			 genomes.add( chromo );
+			 if( rows.length == 0 )
+				 allocate( 0, chromo.getFitnessCalc() );
+			 if( size == rows.length )
+				 grow();
+
+			 int row = order[ size++ ];
+			 chromo.copyInto( rows[ row ] );
+			 indexRow( row );
 		 }
+	 }
 		 
-		 else
+	 /**
+	  * Writes the child of parent and seed into the next free row, the same genome
+	  * FindPartition.createChild would return.  The child starts from the parent's group
+	  * sums, so only the genes set in seed are re-summed.  If duplicates are not allowed
+	  * and the child is already in the population, the row is given back.
+	  * @param parent The parent the child is copied from.
+	  * @param seed Genes to swap, set where the parents differ.
+	  */
+	 public void addChild( Genome parent, Genome seed )
+	 {
+		 if( rows.length == 0 )
+			 allocate( 0, parent.getFitnessCalc() );
+		 if( size == rows.length )
+			 grow();
+
+		 Genome child = rows[ order[ size ] ];
+		 parent.getFitness();  //make sure the sums we copy are known
+		 parent.copyInto( child );
+		 child.swapGenes( seed );
+		 evaluations++;
+
+		 /* Only claim the row if the child is wanted */
+		 if( duplicates || !contains( child ) )
+			 indexRow( order[ size++ ] );
+	 }
+
+	 /**
+	  * Makes sure there are slots free rows after the live genomes, for callers that fill
+	  * child rows from several threads and only decide afterwards which ones to keep.
+	  * @param slots Number of child rows needed.
+	  */
+	 public void reserveChildren( int slots )
+	 {
+		 while( size + slots > rows.length )
+			 grow();
+	 }
+
+	 /**
+	  * Returns the free row that child slot number slot writes to.  Different slots are
+	  * different rows, so threads filling different slots never touch the same words.
+	  * @param slot Index of the slot, 0 up to the count given to reserveChildren.
+	  * @return Genome view of the free row.
+	  */
+	 public Genome childSlot( int slot )
+	 {
+		 return rows[ order[ size + slot ] ];
+	 }
+
+	 /**
+	  * Adds the filled child slots to the live genomes, in slot order.  Slots that were
+	  * not filled, or hold a duplicate when duplicates are not allowed, stay free.
+	  * @param filled filled[ slot ] is true if that slot holds a child.
+	  * @param slots Number of slots to look at.
+	  */
+	 public void keepChildren( boolean[] filled, int slots )
+	 {
+		 int first = size;
+
+		 for( int slot = 0; slot < slots; slot++ )
 		 {
-			 /* contains uses Genome's equal() method to determine equality 
-			  * If chromo is not contained in genomes, we will add it */
-			 if( !genomes.contains( chromo) )
+			 int row = order[ first + slot ];
+			 if( filled[ slot ] )
+				 evaluations++;
+
+			 if( filled[ slot ] && ( duplicates || !contains( rows[ row ] ) ) )
 			 {
-				 genomes.add( chromo );
+				 /* Swap the kept row down to the end of the live genomes */
+				 order[ first + slot ] = order[ size ];
+				 order[ size++ ] = row;
+				 indexRow( row );
 			 }
 		 }
 	 }
+
+	 /**
+	  * Copies chromo over our worst genome if it is better, and moves it to its place in
+	  * fitness order.  
+	  * @param chromo Genome to take in.  It is copied, the caller keeps ownership.  
+	  * @return True if chromo was taken in.  
+	  */
+	 public boolean replaceWorst( Genome chromo )
+	 {
+		 mergeSorted( size );
+		 if( size == 0 )
+			 return false;
+		 
+		 int worst = order[ size - 1 ];
+		 evaluations++;
+		 if( chromo.compareTo( rows[ worst ] ) >= 0 || ( !duplicates && contains( chromo ) ) )
+			 return false;
+		 
+		 chromo.getFitness();  //make sure the sums we copy are known
+		 chromo.copyInto( rows[ worst ] );
+		 fitness[ worst ] = rows[ worst ].getFitness();
+		 
+		 /* Insertion step: shift worse genomes up until the new one is in place */
+		 long key = sortKey( worst );
+		 int i = size - 1;
+		 while( i > 0 && sortKey( order[ i - 1 ] ) > key )
+		 {
+			 order[ i ] = order[ i - 1 ];
+			 i--;
+		 }
+		 order[ i ] = worst;
+		 rebuildIndex();
+		 
+		 return true;
+	 }
+
+	 /**
+	  * Looks chromo up in the hash index.  Genes are only compared for live genomes with 
+	  * the same Zobrist hash, which is almost always none or the duplicate itself.  
+	  * @return True if a live genome has the same genes as chromo 
+	  */
+	 private boolean contains( Genome chromo )
+	 {
+		 if( index == null )
+			 rebuildIndex();
+		 
+		 long hash = chromo.zobristHash();
+		 int mask = index.length - 1;
+		 
+		 for( int slot = slotOf( hash, mask ); index[ slot ] != 0; slot = ( slot + 1 ) & mask )
+		 {
+			 Genome live = rows[ index[ slot ] - 1 ];
+			 if( live != chromo && live.zobristHash() == hash && live.equals( chromo ) )
+				 return true;
+		 }
+		 return false;
+	 }
+	 
+	 /** @return First slot to probe for hash in a table of mask + 1 slots */
+	 private static int slotOf( long hash, int mask )
+	 {
+		 return (int)( hash ^ ( hash >>> 32 ) ) & mask;
+	 }
+	 
+	 /** Adds a newly live row to the hash index, if there is one */
+	 private void indexRow( int row )
+	 {
+		 if( index == null )
+			 return;
+		 
+		 int mask = index.length - 1;
+		 int slot = slotOf( rows[ row ].zobristHash(), mask );
+		 while( index[ slot ] != 0 )
+			 slot = ( slot + 1 ) & mask;
+		 
+		 index[ slot ] = row + 1;
+	 }
+	 
+	 /** 
+	  * Rebuilds the hash index from the live rows.  Rows are only ever freed in bulk, by 
+	  * selection and cataclysm, so the index is rebuilt then rather than deleted from.  
+	  */
+	 private void rebuildIndex()
+	 {
+		 if( duplicates )
+		 {
+			 index = null;
+			 return;
+		 }
+		 
+		 /* Power of two with room for every row at most half full */
+		 int slots = Integer.highestOneBit( Math.max( 2 * rows.length, 2 ) - 1 ) << 1;
+		 if( index == null || index.length != slots )
+			 index = new int[ slots ];
+		 else
+			 Arrays.fill( index, 0 );
+		 
+		 for( int i = 0; i < size; i++ )
+			 indexRow( order[ i ] );
+	 }
 	 
 	 /** @return Returns size of genome for iteration */
 	 public int getSize()
 	 {
-		 return genomes.size();
+		 return size;
+	 }
+	 
+	 /** @return Number of bytes writeState needs */
+	 public int stateBytes()
+	 {
+		 return 4 * Integer.BYTES + rows.length * ( words * Long.BYTES + 2 * Integer.BYTES );
+	 }
+	 
+	 /**
+	  * Writes everything selection depends on: the whole matrix, the fitness and order of 
+	  * every row, size and sorted.  Rows are kept by number, since ties in fitness are broken 
+	  * by row, so a population read back makes exactly the same choices.  
+	  * @param out Buffer with at least stateBytes() bytes remaining.  
+	  */
+	 public void writeState( ByteBuffer out )
+	 {
+		 out.putInt( rows.length ).putInt( words ).putInt( size ).putInt( sorted );
+		 
+		 out.asLongBuffer().put( 0, matrix, 0, matrix.capacity() );
+		 out.position( out.position() + matrix.capacity() * Long.BYTES );
+		 out.asIntBuffer().put( fitness ).put( order );
+		 out.position( out.position() + 2 * rows.length * Integer.BYTES );
+	 }
+	 
+	 /**
+	  * Checks a state written by writeState, without reading it in, so a damaged checkpoint 
+	  * is turned down before anything is replaced.  
+	  * @param in Buffer positioned at the state.  Its position is not moved.  
+	  * @throws IOException If the state is cut short, damaged, or written for genomes of another size.  
+	  */
+	 public void checkState( ByteBuffer in ) throws IOException
+	 {
+		 int at = in.position();
+		 if( in.remaining() < 4 * Integer.BYTES )
+			 throw new IOException( "checkpoint is cut short" );
+		 if( in.getInt( at + Integer.BYTES ) != words )
+			 throw new IOException( "checkpoint genomes do not match the input" );
+		 
+		 int capacity = in.getInt( at );
+		 int size = in.getInt( at + 2 * Integer.BYTES );
+		 int sorted = in.getInt( at + 3 * Integer.BYTES );
+		 if( capacity < 0 || size < 0 || size > capacity || sorted < 0 || sorted > size )
+			 throw new IOException( "checkpoint population is damaged" );
+		 if( in.remaining() - 4 * Integer.BYTES < (long)capacity * ( words * Long.BYTES + 2 * Integer.BYTES ) )
+			 throw new IOException( "checkpoint is cut short" );
+		 
+		 /* order must name every row once, or selection would lose or repeat genomes */
+		 int orderAt = at + 4 * Integer.BYTES + capacity * ( words * Long.BYTES + Integer.BYTES );
+		 boolean[] seen = new boolean[ capacity ];
+		 for( int i = 0; i < capacity; i++ )
+		 {
+			 int row = in.getInt( orderAt + i * Integer.BYTES );
+			 if( row < 0 || row >= capacity || seen[ row ] )
+				 throw new IOException( "checkpoint population is damaged" );
+			 seen[ row ] = true;
+		 }
+	 }
+	 
+	 /**
+	  * Replaces this population with one written by writeState for the same input.  
+	  * @param in Buffer positioned at the state.  
+	  * @throws IOException If checkState turns the state down.  Nothing is replaced then.  
+	  */
+	 public void readState( ByteBuffer in ) throws IOException
+	 {
+		 checkState( in );
+		 int capacity = in.getInt();
+		 in.getInt();
+		 
+		 /* Fresh views, so no group sums or hashes of the old genes are kept */
+		 allocate( capacity, fitnessCalc );
+		 size = in.getInt();
+		 sorted = in.getInt();
+		 
+		 matrix.put( 0, in.asLongBuffer(), 0, matrix.capacity() );
+		 in.position( in.position() + matrix.capacity() * Long.BYTES );
+		 in.asIntBuffer().get( fitness ).get( order );
+		 in.position( in.position() + 2 * capacity * Integer.BYTES );
+		 
+		 rebuildIndex();
+	 }
+	 
+	 /** @return The mean fitness of the live genomes, or 0 if there are none */
+	 public double meanFitness()
+	 {
+		 long total = 0;
+		 for( int i = 0; i < size; i++ )
+			 total += rows[ order[ i ] ].getFitness();
+		 
+		 return ( size == 0 ) ? 0 : (double)total / size;
 	 }
 	 
 	 /** @return True if there are no genomes in population, false otherwise */
 	 public boolean isEmpty()
 	 {
-		 return genomes.isEmpty();
+		 return size == 0;
 	 }
 	 
-	 /** Merges the ArrayList of genomes with addall method {@param popToMerge The pop to merge */
+	 /** Copies the genomes of popToMerge into our free rows {@param popToMerge The pop to merge */
 	 public void mergePop( Population popToMerge )
 	 {
-		 this.genomes.addAll( popToMerge.genomes );
+		 for( int i = 0; i < popToMerge.size; i++ )
+			 addGenome( popToMerge.getGenome( i ) );
 	 }
 	 
 	 /**
-	  * Takes a population and modifies genomes, keeping best N genomes.  
+	  * Takes a population and modifies genomes, keeping best N genomes.  When totalPop is this
+	  * population, the losers' rows are simply marked free and no genome is copied.
 	  * @param totalPop The population that will be changed
 	  * @return Modified population where genomes contains best N genomes.  
 	  */
 	 public Population bestNGenomes( Population totalPop, int bestN )
 	 {
-		 /* Sort ArrayList<Genome> as Genome implements Comparable on fitness */
-		 Collections.sort( totalPop.genomes );
-		 
-		 /*Choose best N genomes.  These are the genomes with the lowest (best) fitness *
-		  * Since subList returns List, we create a new ArrayList with this list as the data*/
-		 genomes = new ArrayList<Genome>( totalPop.genomes.subList( 0, bestN ) ); 
+		 /*Choose best N genomes.  These are the genomes with the lowest (best) fitness */
+		 if( totalPop == this )
+		 {
+			 /* Merge the children into the sorted parents, keeping the first bestN */
+			 mergeSorted( bestN );
+		 }
+		 else
+		 {
+			 totalPop.mergeSorted( totalPop.size );
+			 size = 0;
+			 sorted = 0;
+			 if( !duplicates )
+				 rebuildIndex();
+			 for( int i = 0; i < bestN && i < totalPop.size; i++ )
+				 addGenome( totalPop.getGenome( i ) );
+			 
+			 /* They were copied in fitness order, so this only records their fitness */
+			 mergeSorted( size );
+		 }
 		 
 		 return totalPop; 
 	 }
 	 
+	 /** @return Sort key of a row whose fitness is recorded, fitness << 32 | row */
+	 private long sortKey( int row )
+	 {
+		 return ( (long)fitness[ row ] << 32 ) | row;
+	 }
+	 
+	 /**
+	  * Sorts the genomes added since the last selection and merges them with the sorted 
+	  * genomes, keeping the best keep of them live and in order.  Rows are compared as 
+	  * fitness << 32 | row keys, so no comparator or boxing is involved, and the result 
+	  * is the same order a full sort would give.  The merge stops once it has keep 
+	  * survivors; the rows left over are freed in whatever order they are in.  
+	  * @param keep Number of genomes to keep, at most size.  
+	  */
+	 private void mergeSorted( int keep )
+	 {
+		 keep = Math.min( keep, size );
+		 
+		 /* Sort the new genomes alone, reading each one's fitness once */
+		 int added = size - sorted;
+		 for( int i = 0; i < added; i++ )
+		 {
+			 int row = order[ sorted + i ];
+			 fitness[ row ] = rows[ row ].getFitness();
+			 sortKeys[ i ] = sortKey( row );
+		 }
+		 Arrays.sort( sortKeys, 0, added );
+
+		 /* Merge the two sorted runs until we have keep survivors */
+		 int a = 0;
+		 int b = 0;
+		 int out = 0;
+		 while( out < keep && a < sorted && b < added )
+		 {
+			 if( sortKey( order[ a ] ) < sortKeys[ b ] )
+				 merged[ out++ ] = order[ a++ ];
+			 else
+				 merged[ out++ ] = (int)sortKeys[ b++ ];
+		 }
+		 while( out < keep && a < sorted )
+			 merged[ out++ ] = order[ a++ ];
+		 while( out < keep && b < added )
+			 merged[ out++ ] = (int)sortKeys[ b++ ];
+
+		 /* The rest lose and become free rows */
+		 while( a < sorted )
+			 merged[ out++ ] = order[ a++ ];
+		 while( b < added )
+			 merged[ out++ ] = (int)sortKeys[ b++ ];
+		 
+		 System.arraycopy( merged, 0, order, 0, size );
+		 size = keep;
+		 sorted = keep;
+		 
+		 if( !duplicates )
+			 rebuildIndex();
+	 }
+
+	 /**
+	  * Runs LocalSearch on the best count genomes in place.  Their fitness can only go down, 
+	  * so they still come before every other genome and only they are sorted again.  
+	  * @param count Number of genomes from the front to improve.  
+	  * @param targetFitness Local search stops at this fitness.  
+	  * @param maxSteps Most moves or swaps local search makes on one genome.  
+	  */
+	 public void improveBest( int count, int targetFitness, int maxSteps )
+	 {
+		 mergeSorted( size );
+		 count = Math.min( count, size );
+		 
+		 boolean changed = false;
+		 for( int i = 0; i < count; i++ )
+		 {
+			 int before = getGenome( i ).getFitness();
+			 evaluations += LocalSearch.improve( getGenome( i ), targetFitness, maxSteps );
+			 changed |= getGenome( i ).getFitness() < before;
+		 }
+		 
+		 if( !changed )
+			 return;
+		 
+		 /* Insertion sort the improved front by their new fitness */
+		 for( int i = 0; i < count; i++ )
+		 {
+			 int row = order[ i ];
+			 fitness[ row ] = rows[ row ].getFitness();
+			 
+			 long key = sortKey( row );
+			 int j = i;
+			 while( j > 0 && sortKey( order[ j - 1 ] ) > key )
+			 {
+				 order[ j ] = order[ j - 1 ];
+				 j--;
+			 }
+			 order[ j ] = row;
+		 }
+		 
+		 /* Their hashes changed with their genes */
+		 if( !duplicates )
+			 rebuildIndex();
+	 }
+	 
+	 /**
+	  * Writes seeds and perturbed copies of them over the worst genomes, keeping the best.  
+	  * Each perturbed copy is a seed mutated at perturbRate, taking the seeds in turn.  
+	  * @param seeds Genomes to copy in, such as the partitions of Heuristics.  
+	  * @param perturbed Number of perturbed copies to add after the seeds.  
+	  * @param perturbRate Chance that any one gene of a copy is flipped.  
+	  * @param rand Source of the random choices.  
+	  */
+	 public void seedPopulation( Genome[] seeds, int perturbed, double perturbRate, GARandom rand )
+	 {
+		 mergeSorted( size );
+		 
+		 /* Fill from the worst end, stopping before the best genome */
+		 int i = size - 1;
+		 for( int s = 0; s < seeds.length && i >= 1; s++ )
+		 {
+			 seeds[ s ].getFitness();  //make sure the sums we copy are known
+			 seeds[ s ].copyInto( getGenome( i-- ) );
+		 }
+		 for( int p = 0; p < perturbed && i >= 1 && seeds.length > 0; p++ )
+		 {
+			 seeds[ p % seeds.length ].mutateInto( getGenome( i-- ), perturbRate, rand );
+			 evaluations++;
+		 }
+		 
+		 /* Everything after the kept genomes is new, so sort it in */
+		 sorted = Math.min( sorted, i + 1 );
+		 mergeSorted( size );
+	 }
+	 
 	 /**
 	  * Create a new population based on mutating the best fitness Genome from previous population.
+	  * The mutants are written over the rows of every other live genome.
 	  * @param mutationRate The mutation rate applied to fittest Genome to create a new population.
 	  */
 	 public void cataclysmPop( double mutationRate )
 	 {
-		 /* Fittest survivor from failed population */
+		 cataclysmPop( mutationRate, new GARandom() );
+	 }
+	 
+	 /**
+	  * Same as {@link #cataclysmPop(double)}, drawing the mutations from rand.
+	  * @param mutationRate The mutation rate applied to fittest Genome to create a new population.
+	  * @param rand Source of the random choices.  
+	  */
+	 public void cataclysmPop( double mutationRate, GARandom rand )
+	 {
+		 cataclysmPop( mutationRate, rand, false );
+	 }
+	 
+	 /**
+	  * Same as {@link #cataclysmPop(double, GARandom)}.  If parallel is true, the mutants are 
+	  * written on the common ForkJoinPool.  Each row gets its own generator, split from rand 
+	  * in row order before any of them runs, so the result does not depend on the threads.  
+	  * @param mutationRate The mutation rate applied to fittest Genome to create a new population.
+	  * @param rand Source of the random choices.  
+	  * @param parallel True to mutate the rows on every core.  
+	  */
+	 public void cataclysmPop( double mutationRate, GARandom rand, boolean parallel )
+	 {
+		 /* Fittest survivor from failed population, moved to the front.  Its sums are known 
+		  * after the merge, so the mutants below only read it */
+		 mergeSorted( size );
 		 Genome bestGenome = this.getFittest();
 		 
-		 /* Start at index 1, and set each index in Genomes to a mutatedGene */
-		 for( int i = 1; i < this.getSize(); i++ )
+		 if( parallel )
 		 {
-			/* Create new genome by mutation, set it in index i */
-			Genome newMutant = bestGenome.mutateGenome( mutationRate );
-			this.genomes.set( i, newMutant );
+			 GARandom[] streams = new GARandom[ size ];
+			 for( int i = 1; i < size; i++ )
+				 streams[ i ] = rand.split();
+			 
+			 /* Every row is written by one task only, and the views are distinct */
+			 IntStream.range( 1, size ).parallel()
+			 		  .forEach( i -> bestGenome.mutateInto( getGenome( i ), mutationRate, streams[ i ] ) );
 		 }
+		 else
+		 {
+			 /* Start at index 1, and set each index in Genomes to a mutatedGene */
+			 for( int i = 1; i < this.getSize(); i++ )
+			 {
+				/* Create new genome by mutation in the row at index i */
+				bestGenome.mutateInto( getGenome( i ), mutationRate, rand );
+			 }
+		 }
+		 
+		 /* Every genome but the first is new, so sort them again */
+		 evaluations += Math.max( 0, size - 1 );
+		 sorted = Math.min( 1, size );
+		 mergeSorted( size );
 	 }
 	 
  } 
\ No newline at end of file
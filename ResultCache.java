@@ -0,0 +1,331 @@
+/*
+ * Bonus Assignment #1
+ * CSCI 3102 Fall 2014
+ * author Shane McCulley
+ * date October 11, 2014
+ * version 0.1
+ **/
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the best partition found for every set, so a set that comes back, in any order,
+ * is not solved from scratch.  A set is keyed by its values sorted, the canonical form of the
+ * multiset, and the partition is stored in that order too.  A lookup maps it back through
+ * the new set's own sorted order.  Equal values are interchangeable, so any way of matching
+ * them up gives the same group sums.
+ *
+ * There are two tiers.  The most recently used MEMORY_ENTRIES sets are kept on the heap in
+ * an LRU map.  Every set is also appended to a memory mapped file, which survives restarts:
+ *
+ *     int MAGIC, int VERSION, long end of the last record, then records of
+ *     long hash, int n, int fitness, int[ n ] sorted values, long[ words ] genes
+ *
+ * Opening the file reads every record once to index them by hash.  A set solved again with
+ * a better fitness gets a new record, and the index moves to it.  The end offset is written
+ * after the record, so a run killed mid-write leaves the file as it was.  The file grows by
+ * doubling, up to 2 GB, after which only the memory tier takes new sets.
+ *
+ * Keys are 64 bit hashes, but the sorted values are stored and compared too, so two sets
+ * that share a hash can never be confused.
+ *
+ * Opening checks the header and every record against the file size.  A file that is not a
+ * cache is refused, while a damaged one keeps the records before the first bad one and is
+ * appended to from there.  The file is locked while it is open, so a second process using
+ * the same file is refused instead of overwriting our records.
+ *
+ * @author Shane McCulley
+ */
+public class ResultCache implements Closeable
+{
+	final static int MAGIC = 0x50415254;    //"PART"
+	final static int VERSION = 1;
+	final static int HEADER_BYTES = 2 * Integer.BYTES + Long.BYTES;
+	final static int INITIAL_FILE_SIZE = 1 << 20;
+
+	/* Number of sets kept on the heap */
+	final static int MEMORY_ENTRIES = 256;
+
+	/** One cached set: its values sorted, the genes of its best partition in that order and their fitness */
+	private static class Entry
+	{
+		final long hash;
+		final int[] values;
+		final long[] genes;
+		final int fitness;
+
+		Entry( long hash, int[] values, long[] genes, int fitness )
+		{
+			this.hash = hash;
+			this.values = values;
+			this.genes = genes;
+			this.fitness = fitness;
+		}
+	}
+
+	//Instance variables
+	private final LinkedHashMap<Long, Entry> memory = new LinkedHashMap<Long, Entry>( 2 * MEMORY_ENTRIES, 0.75f, true )
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry( Map.Entry<Long, Entry> eldest )
+		{
+			return size() > MEMORY_ENTRIES;
+		}
+	};
+
+	private final FileChannel channel;     //null when there is no disk tier
+	private MappedByteBuffer file;
+	private final HashMap<Long, Integer> offsets = new HashMap<Long, Integer>();   //Record of each hash on disk
+	private int end;                       //First free byte of file
+
+	/** Creates a cache with only the memory tier */
+	public ResultCache()
+	{
+		channel = null;
+	}
+
+	/**
+	 * Opens or creates the disk tier and indexes the sets already in it.  A damaged file is 
+	 * cut back to its last whole record, with a warning on System.err.  
+	 * @param fileName The cache file.
+	 * @throws IOException If the file can not be opened, is not a cache file or is locked by 
+	 * another process.
+	 */
+	public ResultCache( String fileName ) throws IOException
+	{
+		channel = FileChannel.open( Paths.get( fileName ), StandardOpenOption.CREATE,
+									StandardOpenOption.READ, StandardOpenOption.WRITE );
+		try
+		{
+			open( fileName );
+		}
+		catch( IOException | RuntimeException e )
+		{
+			channel.close();
+			throw e;
+		}
+	}
+
+	/** Locks, maps and indexes the file of channel, see {@link #ResultCache(String)} {@param fileName For messages} */
+	private void open( String fileName ) throws IOException
+	{
+		FileLock lock;
+		try
+		{
+			lock = channel.tryLock();
+		}
+		catch( OverlappingFileLockException e )
+		{
+			lock = null;   //held by another cache in this JVM
+		}
+		if( lock == null )
+			throw new IOException( fileName + " is in use by another process" );
+
+		long size = channel.size();
+		if( size > Integer.MAX_VALUE )
+			throw new IOException( fileName + " is over 2 GB, so it is not a result cache" );
+
+		/* Check the header before mapping, which would grow a file that is not ours */
+		ByteBuffer header = ByteBuffer.allocate( HEADER_BYTES );
+		while( header.hasRemaining() && channel.read( header, header.position() ) > 0 )
+			;
+		if( size != 0 && ( header.hasRemaining() || header.getInt( 0 ) != MAGIC || header.getInt( 4 ) != VERSION ) )
+			throw new IOException( fileName + " is not a result cache" );
+
+		file = channel.map( FileChannel.MapMode.READ_WRITE, 0, Math.max( size, INITIAL_FILE_SIZE ) );
+		if( size == 0 )
+		{
+			file.putInt( 0, MAGIC ).putInt( 4, VERSION ).putLong( 8, HEADER_BYTES );
+			end = HEADER_BYTES;
+			return;
+		}
+
+		/* Index every whole record before the end, or before the end of the file if the end 
+		 * offset is past it; a later record of the same hash replaces the earlier one.  The 
+		 * file is zero after the last record, and no record starts with 16 zero bytes */
+		long last = Math.min( header.getLong( 8 ), size );
+		int at = HEADER_BYTES;
+		while( at + 16 <= last )
+		{
+			int n = file.getInt( at + 8 );
+			if( n < 0 || at + recordBytes( n ) > last 
+				|| ( file.getLong( at ) == 0 && n == 0 && file.getInt( at + 12 ) == 0 ) )
+				break;
+
+			offsets.put( file.getLong( at ), at );
+			at += (int)recordBytes( n );
+		}
+
+		end = at;
+		if( end != header.getLong( 8 ) )
+		{
+			System.err.println( "Result cache " + fileName + " is damaged, keeping the " + offsets.size() 
+								+ " sets before byte " + end );
+			file.putLong( 8, end );
+		}
+	}
+
+	/** @return Bytes of the record of a set of n values, as a long so no n read from a damaged file overflows */
+	private static long recordBytes( long n )
+	{
+		return Long.BYTES + 2 * Integer.BYTES + n * Integer.BYTES + ( ( n + 63 ) >>> 6 ) * Long.BYTES;
+	}
+
+	/** @return The values of fitnessCalc in increasing order {@param order Their indices in that order} */
+	private static int[] sortedValues( FitnessCalc fitnessCalc, IntBuffer order )
+	{
+		int[] values = new int[ order.limit() ];
+		for( int k = 0; k < values.length; k++ )
+			values[ k ] = fitnessCalc.getWeight( order.get( k ) );
+		return values;
+	}
+
+	/** @return A 64 bit hash of the sorted values, the same for every order of one multiset */
+	static long canonicalHash( int[] sortedValues )
+	{
+		long hash = sortedValues.length;
+		for( int k = 0; k < sortedValues.length; k++ )
+			hash = ( hash ^ Genome.zobristKey( sortedValues[ k ] ) ) * 31 + k;
+
+		return hash;
+	}
+
+	/**
+	 * Finds the best partition cached for this set, in any order.
+	 * @param fitnessCalc Holds the set.
+	 * @return The partition as a genome of this set, in its own order, or null if it is not cached.
+	 */
+	public synchronized Genome lookup( FitnessCalc fitnessCalc )
+	{
+		IntBuffer order = fitnessCalc.getWeightOrder();
+		int[] values = sortedValues( fitnessCalc, order );
+		Entry entry = find( canonicalHash( values ), values );
+		if( entry == null )
+			return null;
+
+		/* Sorted position k of the entry is value order.get( k ) of this set */
+		long[] genes = new long[ Genome.wordsFor( order.limit() ) ];
+		for( int k = 0; k < order.limit(); k++ )
+		{
+			if( ( entry.genes[ k >>> 6 ] & ( 1L << k ) ) != 0 )
+				genes[ order.get( k ) >>> 6 ] |= 1L << order.get( k );
+		}
+
+		return new Genome( fitnessCalc, genes, 0 );
+	}
+
+	/**
+	 * Remembers chromo as the partition of its set, unless one at least as good is cached.
+	 * @param chromo The partition.  Its FitnessCalc holds the set.
+	 * @throws IOException If the disk tier can not be written.
+	 */
+	public synchronized void store( Genome chromo ) throws IOException
+	{
+		FitnessCalc fitnessCalc = chromo.getFitnessCalc();
+		IntBuffer order = fitnessCalc.getWeightOrder();
+		int[] values = sortedValues( fitnessCalc, order );
+		long hash = canonicalHash( values );
+
+		Entry cached = find( hash, values );
+		if( cached != null && cached.fitness <= chromo.getFitness() )
+			return;
+
+		long[] genes = new long[ Genome.wordsFor( order.limit() ) ];
+		for( int k = 0; k < order.limit(); k++ )
+		{
+			if( chromo.getGene( order.get( k ) ) != 0 )
+				genes[ k >>> 6 ] |= 1L << k;
+		}
+
+		Entry entry = new Entry( hash, values, genes, chromo.getFitness() );
+		memory.put( hash, entry );
+		if( channel != null )
+			append( entry );
+	}
+
+	/** @return The entry of these sorted values, from memory or else from disk, or null */
+	private Entry find( long hash, int[] values )
+	{
+		Entry entry = memory.get( hash );
+		if( entry == null && channel != null && offsets.containsKey( hash ) )
+		{
+			entry = read( offsets.get( hash ) );
+			memory.put( hash, entry );
+		}
+
+		return ( entry != null && Arrays.equals( entry.values, values ) ) ? entry : null;
+	}
+
+	/** @return The entry of the record at {@param at} */
+	private Entry read( int at )
+	{
+		long hash = file.getLong( at );
+		int n = file.getInt( at + 8 );
+		int fitness = file.getInt( at + 12 );
+		at += 16;
+
+		int[] values = new int[ n ];
+		for( int k = 0; k < n; k++, at += Integer.BYTES )
+			values[ k ] = file.getInt( at );
+
+		long[] genes = new long[ Genome.wordsFor( n ) ];
+		for( int w = 0; w < genes.length; w++, at += Long.BYTES )
+			genes[ w ] = file.getLong( at );
+
+		return new Entry( hash, values, genes, fitness );
+	}
+
+	/** Appends a record of entry to the file, growing it if needed, then moves the end past it */
+	private void append( Entry entry ) throws IOException
+	{
+		long needed = (long)end + recordBytes( entry.values.length );
+		if( needed > Integer.MAX_VALUE )
+			return;    //file is full, the memory tier still has the entry
+		if( needed > file.capacity() )
+			file = channel.map( FileChannel.MapMode.READ_WRITE, 0, Math.min( Math.max( needed, 2L * file.capacity() ), Integer.MAX_VALUE ) );
+
+		int at = end;
+		file.putLong( at, entry.hash ).putInt( at + 8, entry.values.length ).putInt( at + 12, entry.fitness );
+		at += 16;
+		for( int value : entry.values )
+		{
+			file.putInt( at, value );
+			at += Integer.BYTES;
+		}
+		for( long word : entry.genes )
+		{
+			file.putLong( at, word );
+			at += Long.BYTES;
+		}
+
+		offsets.put( entry.hash, end );
+		end = at;
+		file.putLong( 8, end );
+	}
+
+	/** Forces the disk tier to the device and closes it, which releases the lock.  Closing twice does nothing */
+	@Override
+	public synchronized void close() throws IOException
+	{
+		if( channel != null && channel.isOpen() )
+		{
+			file.force();
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ * Bonus Assignment #1
+ * CSCI 3102 Fall 2014
+ * author Shane McCulley
+ * date October 11, 2014
+ * version 0.1
+ **/
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads integer sets in the form {1, 2, 3} from a file, one set per call to nextSet.
+ * The file is memory mapped and parsed a byte at a time straight into an int[] buffer,
+ * so no Scanner, String or Integer is created for the values.
+ *
+ * Values may be separated by any mix of commas and whitespace, and sets may be split
+ * over lines or share a line, so {1, 2, 3}, {1 2 3} and {1,2,\n3} all read the same.
+ * A set may hold a single value like {3}, or none at all.  Anything between sets is skipped.
+ * Files larger than one mapping are mapped one window at a time.
+ *
+ * The values of the current set stay in getValues() until the next call to nextSet
+ * overwrites them, so a caller that keeps a set must copy it.
+ *
+ * @author Shane McCulley
+ */
+public class SetReader implements Closeable
+{
+	/* Largest part of the file mapped at once */
+	final static long WINDOW_SIZE = 1L << 30;
+
+	//Instance variables
+	private final FileChannel channel; //null when reading bytes already in memory
+	private final long fileSize;
+	private long windowStart = 0;      //Position in the file of the current window
+	private ByteBuffer window;
+
+	private int[] values = new int[ 64 ];
+	private int count = 0;             //Number of values in the current set
+
+	/**
+	 * Opens and maps the file.
+	 * @param fileName The file to read.
+	 * @throws IOException If the file can not be opened or mapped.
+	 */
+	public SetReader( String fileName ) throws IOException
+	{
+		this( Paths.get( fileName ) );
+	}
+
+	/**
+	 * Opens and maps the file.
+	 * @param file The file to read.
+	 * @throws IOException If the file can not be opened or mapped.
+	 */
+	public SetReader( Path file ) throws IOException
+	{
+		channel = FileChannel.open( file, StandardOpenOption.READ );
+		fileSize = channel.size();
+		window = channel.map( FileChannel.MapMode.READ_ONLY, 0, Math.min( fileSize, WINDOW_SIZE ) );
+	}
+
+	/**
+	 * Reads sets from bytes already in memory, such as the body of a request to PartitionServer.  
+	 * @param data The sets in the same form as a file.  It is not copied.  
+	 */
+	public SetReader( byte[] data )
+	{
+		channel = null;
+		fileSize = data.length;
+		window = ByteBuffer.wrap( data );
+	}
+
+	/** @return The next byte of the file, or -1 at the end of the file */
+	private int nextByte() throws IOException
+	{
+		if( !window.hasRemaining() )
+		{
+			/* Move the window along, unless it already reaches the end of the file */
+			windowStart += window.capacity();
+			if( windowStart >= fileSize )
+				return -1;
+
+			window = channel.map( FileChannel.MapMode.READ_ONLY, windowStart,
+								  Math.min( fileSize - windowStart, WINDOW_SIZE ) );
+		}
+		return window.get();
+	}
+
+	/** @return The position in the file of the byte nextByte returned last */
+	private long position()
+	{
+		return windowStart + window.position() - 1;
+	}
+
+	/**
+	 * Reads the next set into getValues().
+	 * @return True if a set was read, false at the end of the file.
+	 * @throws IOException If the file can not be read, a set is not closed by } or holds
+	 * something other than integers, commas and whitespace.
+	 */
+	public boolean nextSet() throws IOException
+	{
+		count = 0;
+
+		/* Skip everything before the opening brace */
+		int b;
+		do
+		{
+			b = nextByte();
+			if( b == -1 )
+				return false;
+		} while( b != '{' );
+
+		b = nextByte();
+		while( b != '}' )
+		{
+			if( b == -1 )
+				throw new IOException( "Set not closed by } at end of file" );
+
+			if( b == ',' || b == ' ' || b == '\t' || b == '\n' || b == '\r' )
+			{
+				b = nextByte();
+				continue;
+			}
+
+			/* Anything else has to be the start of an integer */
+			boolean negative = ( b == '-' );
+			if( b == '-' || b == '+' )
+				b = nextByte();
+
+			if( b < '0' || b > '9' )
+				throw new IOException( "Expected an integer at byte " + position() );
+
+			long value = 0;
+			while( b >= '0' && b <= '9' )
+			{
+				value = value * 10 + ( b - '0' );
+				if( value > Integer.MAX_VALUE + 1L )
+					throw new IOException( "Integer too large at byte " + position() );
+				b = nextByte();
+			}
+
+			if( negative )
+				value = -value;
+			if( value > Integer.MAX_VALUE )
+				throw new IOException( "Integer too large at byte " + position() );
+
+			if( count == values.length )
+				values = Arrays.copyOf( values, 2 * count );
+			values[ count++ ] = (int)value;
+		}
+
+		return true;
+	}
+
+	/** @return Buffer holding the current set in its first getCount() entries */
+	public int[] getValues()
+	{
+		return values;
+	}
+
+	/** @return Number of values in the current set */
+	public int getCount()
+	{
+		return count;
+	}
+
+	/** Closes the file.  The mapping itself is released when it is garbage collected */
+	public void close() throws IOException
+	{
+		if( channel != null )
+			channel.close();
+	}
+}